@@ -0,0 +1,98 @@
+package com.mysillydreams.security.jwk;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.servlet.OAuth2ResourceServerAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces Spring Boot's issuer-uri based {@link JwtDecoder}, which resolves OIDC discovery and the
+ * JWK set lazily on the first request and re-fetches keys on the request path, with one that verifies
+ * tokens offline against a {@link PrefetchingJwkSource}.
+ * <p>
+ * Active for servlet applications that set {@code spring.security.oauth2.resourceserver.jwt.issuer-uri};
+ * disable with {@code app.security.jwk.enabled=false}. The JWK set URI defaults to Keycloak's
+ * {@code <issuer>/protocol/openid-connect/certs}, so no discovery request is needed.
+ */
+@AutoConfiguration(before = OAuth2ResourceServerAutoConfiguration.class)
+@ConditionalOnClass(NimbusJwtDecoder.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "app.security.jwk", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties({JwkCacheProperties.class, OAuth2ResourceServerProperties.class})
+public class JwkCacheAutoConfiguration {
+
+    private static final String KEYCLOAK_CERTS_PATH = "/protocol/openid-connect/certs";
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "spring.security.oauth2.resourceserver.jwt.issuer-uri")
+    public PrefetchingJwkSource prefetchingJwkSource(JwkCacheProperties properties,
+                                                     OAuth2ResourceServerProperties resourceServer) {
+        OAuth2ResourceServerProperties.Jwt jwt = resourceServer.getJwt();
+        String jwkSetUri = jwt.getJwkSetUri() != null
+                ? jwt.getJwkSetUri()
+                : stripTrailingSlash(jwt.getIssuerUri()) + KEYCLOAK_CERTS_PATH;
+        PrefetchingJwkSource source = new PrefetchingJwkSource(URI.create(jwkSetUri), properties.getConnectTimeout(),
+                properties.getReadTimeout(), properties.getRefreshInterval(), properties.getMinRefreshInterval());
+        source.start();
+        return source;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(PrefetchingJwkSource.class)
+    public JwtDecoder jwtDecoder(PrefetchingJwkSource jwkSource, OAuth2ResourceServerProperties resourceServer) {
+        OAuth2ResourceServerProperties.Jwt jwt = resourceServer.getJwt();
+        Set<JWSAlgorithm> algorithms = new HashSet<>();
+        for (String algorithm : jwt.getJwsAlgorithms()) {
+            algorithms.add(JWSAlgorithm.parse(algorithm));
+        }
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, jwkSource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+            // Claims are validated by the Spring validators below
+        });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(validator(jwt));
+        return decoder;
+    }
+
+    private static OAuth2TokenValidator<Jwt> validator(OAuth2ResourceServerProperties.Jwt jwt) {
+        OAuth2TokenValidator<Jwt> issuerAndTimestamps = JwtValidators.createDefaultWithIssuer(jwt.getIssuerUri());
+        List<String> audiences = jwt.getAudiences();
+        if (audiences == null || audiences.isEmpty()) {
+            return issuerAndTimestamps;
+        }
+        JwtClaimValidator<Collection<String>> audience = new JwtClaimValidator<>("aud",
+                aud -> aud != null && aud.stream().anyMatch(audiences::contains));
+        return new DelegatingOAuth2TokenValidator<>(issuerAndTimestamps, audience);
+    }
+
+    private static String stripTrailingSlash(String uri) {
+        return uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri;
+    }
+}
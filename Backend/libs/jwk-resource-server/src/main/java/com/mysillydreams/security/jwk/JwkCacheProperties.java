@@ -0,0 +1,20 @@
+package com.mysillydreams.security.jwk;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the cached JWK source. The issuer and (optionally) the JWK set URI are taken from the
+ * standard {@code spring.security.oauth2.resourceserver.jwt.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.security.jwk")
+public class JwkCacheProperties {
+    private boolean enabled = true;
+    private Duration refreshInterval = Duration.ofMinutes(5);
+    private Duration minRefreshInterval = Duration.ofSeconds(30); // Also the first retry delay after a failed fetch
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(5);
+}
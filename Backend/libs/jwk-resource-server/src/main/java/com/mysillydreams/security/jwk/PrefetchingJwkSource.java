@@ -0,0 +1,188 @@
+package com.mysillydreams.security.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JWK source that keeps the issuer's key set in memory so token verification never waits on the
+ * identity provider in the normal case.
+ * <ul>
+ *     <li>The key set is fetched in the background as soon as the source is started, and refreshed on
+ *     a fixed interval, or earlier if a key declares an expiry time.</li>
+ *     <li>A token signed with a key that is not cached (key rotation, or a request that arrives before
+ *     the first fetch completed) triggers one immediate refresh. Such refreshes are single-flight and
+ *     rate limited, so a burst of tokens with an unknown kid costs at most one fetch.</li>
+ *     <li>If the identity provider is unreachable, the last key set that was fetched successfully stays
+ *     in use, and the background refresh retries with exponential backoff.</li>
+ * </ul>
+ */
+public class PrefetchingJwkSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingJwkSource.class);
+
+    private final URI jwkSetUri;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    private volatile JWKSet jwkSet; // Null until the first successful fetch
+    private long lastFetchAttemptNanos; // Guarded by fetchLock
+    private boolean fetchAttempted; // Guarded by fetchLock
+    private Duration retryDelay; // Current backoff after failed background refreshes; only touched by the scheduler thread
+
+    public PrefetchingJwkSource(URI jwkSetUri, Duration connectTimeout, Duration readTimeout,
+                                Duration refreshInterval, Duration minRefreshInterval) {
+        this.jwkSetUri = jwkSetUri;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+        this.readTimeout = readTimeout;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.retryDelay = minRefreshInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwk-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the background prefetch. Does not wait for it, so startup does not depend on the
+     * identity provider being reachable.
+     */
+    public void start() {
+        scheduler.execute(this::backgroundRefresh);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        JWKSet current = jwkSet;
+        if (current != null) {
+            List<JWK> matches = jwkSelector.select(current);
+            if (!matches.isEmpty()) {
+                return matches;
+            }
+        }
+        JWKSet refreshed = refreshOnDemand(current);
+        return refreshed == null ? List.of() : jwkSelector.select(refreshed);
+    }
+
+    /**
+     * @return the cached key set, or null if none has been fetched yet
+     */
+    public JWKSet getCachedJwkSet() {
+        return jwkSet;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private JWKSet refreshOnDemand(JWKSet seen) {
+        fetchLock.lock();
+        try {
+            if (jwkSet != seen) {
+                return jwkSet; // Another caller refreshed while this one was waiting
+            }
+            if (fetchAttempted && System.nanoTime() - lastFetchAttemptNanos < minRefreshInterval.toNanos()) {
+                return seen; // Tokens with unknown keys must not turn into a request flood against the provider
+            }
+            fetchLocked();
+            return jwkSet;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void backgroundRefresh() {
+        boolean fetched;
+        fetchLock.lock();
+        try {
+            fetched = fetchLocked();
+        } finally {
+            fetchLock.unlock();
+        }
+        Duration delay;
+        if (fetched) {
+            retryDelay = minRefreshInterval;
+            delay = nextRefreshDelay(jwkSet);
+        } else {
+            delay = retryDelay;
+            retryDelay = min(retryDelay.multipliedBy(2), refreshInterval);
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::backgroundRefresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Called with fetchLock held. Keeps the current key set on any failure.
+    private boolean fetchLocked() {
+        fetchAttempted = true;
+        lastFetchAttemptNanos = System.nanoTime();
+        JWKSet previous = jwkSet;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(jwkSetUri)
+                    .timeout(readTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            JWKSet fetched = JWKSet.parse(response.body());
+            if (fetched.getKeys().isEmpty()) {
+                throw new IOException("empty key set");
+            }
+            jwkSet = fetched;
+            log.debug("Fetched {} keys from {}", fetched.getKeys().size(), jwkSetUri);
+            return true;
+        } catch (IOException | ParseException e) {
+            log.warn("Could not fetch JWK set from {} ({}); {}", jwkSetUri, e.getMessage(),
+                    previous == null ? "no keys cached yet" : "keeping " + previous.getKeys().size() + " cached keys");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Refresh on the regular interval, or shortly before the first key that declares an expiry runs out.
+    private Duration nextRefreshDelay(JWKSet keys) {
+        Duration delay = refreshInterval;
+        long now = System.currentTimeMillis();
+        for (JWK key : keys.getKeys()) {
+            Date expiresAt = key.getExpirationTime();
+            if (expiresAt != null) {
+                delay = min(delay, Duration.ofMillis(expiresAt.getTime() - now).minus(minRefreshInterval));
+            }
+        }
+        return delay.compareTo(minRefreshInterval) < 0 ? minRefreshInterval : delay;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,195 @@
+package com.mysillydreams.security.jwk;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefetchingJwkSourceTest {
+
+    private static final String REALM_PATH = "/realms/test";
+    private static final String CERTS_PATH = REALM_PATH + "/protocol/openid-connect/certs";
+
+    private HttpServer server;
+    private final AtomicReference<String> body = new AtomicReference<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(CERTS_PATH, exchange -> {
+            requests.incrementAndGet();
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void prefetchesKeysInTheBackground() throws Exception {
+        RSAKey key = newKey("k1");
+        publish(key);
+        try (PrefetchingJwkSource source = newSource(Duration.ofSeconds(30))) {
+            source.start();
+            awaitCached(source);
+
+            assertThat(source.get(selectorFor("k1"), null)).hasSize(1);
+            assertThat(requests.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void keepsCachedKeysWhenTheProviderFails() throws Exception {
+        publish(newKey("k1"));
+        try (PrefetchingJwkSource source = newSource(Duration.ZERO)) {
+            source.start();
+            awaitCached(source);
+
+            status.set(500);
+            assertThat(source.get(selectorFor("unknown"), null)).isEmpty();
+            assertThat(source.get(selectorFor("k1"), null)).hasSize(1);
+
+            server.stop(0);
+            assertThat(source.get(selectorFor("unknown"), null)).isEmpty();
+            assertThat(source.get(selectorFor("k1"), null)).hasSize(1);
+        }
+    }
+
+    @Test
+    void refreshesOnceForARotatedKey() throws Exception {
+        RSAKey first = newKey("k1");
+        RSAKey rotated = newKey("k2");
+        publish(first);
+        try (PrefetchingJwkSource source = newSource(Duration.ZERO)) {
+            source.start();
+            awaitCached(source);
+
+            publish(first, rotated);
+            assertThat(source.get(selectorFor("k2"), null)).hasSize(1);
+            assertThat(requests.get()).isEqualTo(2);
+
+            assertThat(source.get(selectorFor("k2"), null)).hasSize(1);
+            assertThat(requests.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void rateLimitsRefreshesForUnknownKeys() throws Exception {
+        publish(newKey("k1"));
+        try (PrefetchingJwkSource source = newSource(Duration.ofMinutes(1))) {
+            source.start();
+            awaitCached(source);
+
+            for (int i = 0; i < 20; i++) {
+                assertThat(source.get(selectorFor("unknown-" + i), null)).isEmpty();
+            }
+            assertThat(requests.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void decodesTokensThroughTheAutoConfiguredDecoder() throws Exception {
+        RSAKey key = newKey("k1");
+        publish(key);
+        String issuer = "http://127.0.0.1:" + server.getAddress().getPort() + REALM_PATH;
+        String token = sign(key, issuer);
+
+        new WebApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(JwkCacheAutoConfiguration.class))
+                .withPropertyValues("spring.security.oauth2.resourceserver.jwt.issuer-uri=" + issuer)
+                .run(context -> {
+                    awaitCached(context.getBean(PrefetchingJwkSource.class));
+                    Jwt jwt = context.getBean(JwtDecoder.class).decode(token);
+
+                    assertThat(jwt.getSubject()).isEqualTo("user-1");
+                    assertThat(requests.get()).isEqualTo(1);
+                });
+    }
+
+    @Test
+    void staysOffWhenDisabled() {
+        new WebApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(JwkCacheAutoConfiguration.class))
+                .withPropertyValues("spring.security.oauth2.resourceserver.jwt.issuer-uri=http://127.0.0.1/realms/test",
+                        "app.security.jwk.enabled=false")
+                .run(context -> assertThat(context).doesNotHaveBean(JwtDecoder.class));
+    }
+
+    private PrefetchingJwkSource newSource(Duration minRefreshInterval) {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + CERTS_PATH);
+        return new PrefetchingJwkSource(uri, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofMinutes(5), minRefreshInterval);
+    }
+
+    private void publish(RSAKey... keys) {
+        body.set(new JWKSet(Arrays.stream(keys).<JWK>map(RSAKey::toPublicJWK).toList()).toString());
+    }
+
+    private static RSAKey newKey(String kid) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(kid).generate();
+    }
+
+    private static JWKSelector selectorFor(String kid) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(kid).build());
+    }
+
+    private static String sign(RSAKey key, String issuer) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject("user-1")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static void awaitCached(PrefetchingJwkSource source) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (source.getCachedJwkSet() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(source.getCachedJwkSet()).isNotNull();
+    }
+}
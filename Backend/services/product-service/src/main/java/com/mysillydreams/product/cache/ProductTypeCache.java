@@ -0,0 +1,151 @@
+package com.mysillydreams.product.cache;
+
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.repositories.ProductTypeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Near cache in front of {@link ProductTypeRepository}. Product types change a few times a month
+ * but are read on every product write and storefront page, so lookups are served from memory.
+ * Entries expire after a TTL, the cache is bounded (least recently used entries are dropped), and
+ * every {@link ProductTypeChangedEvent} evicts the affected entry.
+ */
+@Component
+public class ProductTypeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductTypeCache.class);
+
+    private final ProductTypeRepository productTypeRepository;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+    private Entry allTypes; // Snapshot of findAll(), guarded by lock
+    private long generation; // Incremented on every eviction, guarded by lock
+
+    public ProductTypeCache(ProductTypeRepository productTypeRepository,
+                            @Value("${product.cache.product-types.max-size:500}") int maxSize,
+                            @Value("${product.cache.product-types.ttl:PT10M}") Duration ttl) {
+        this.productTypeRepository = productTypeRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Optional<ProductType> findById(String id) {
+        long loadGeneration;
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null && !entry.isExpired()) {
+                return Optional.of((ProductType) entry.value);
+            }
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        Optional<ProductType> loaded = productTypeRepository.findById(id);
+        loaded.ifPresent(productType -> store(loadGeneration, () -> entries.put(id, new Entry(productType))));
+        return loaded;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<ProductType> findAll() {
+        long loadGeneration;
+        lock.lock();
+        try {
+            if (allTypes != null && !allTypes.isExpired()) {
+                return (List<ProductType>) allTypes.value;
+            }
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        List<ProductType> loaded = List.copyOf(productTypeRepository.findAll());
+        store(loadGeneration, () -> {
+            allTypes = new Entry(loaded);
+            for (ProductType productType : loaded) {
+                entries.put(productType.getId(), new Entry(productType));
+            }
+        });
+        return loaded;
+    }
+
+    public void evict(String id) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(id);
+            allTypes = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void evictAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            allTypes = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void onProductTypeChanged(ProductTypeChangedEvent event) {
+        log.debug("Evicting cached product type: {}", event.getProductTypeId());
+        if (event.getProductTypeId() == null) {
+            evictAll();
+        } else {
+            evict(event.getProductTypeId());
+        }
+    }
+
+    /**
+     * Applies a cache fill unless an eviction happened while the value was being loaded, in which
+     * case the loaded value may already be stale and is simply not cached.
+     */
+    private void store(long loadGeneration, Runnable fill) {
+        lock.lock();
+        try {
+            if (generation == loadGeneration) {
+                fill.run();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value) {
+            this.value = value;
+            this.expiresAt = System.nanoTime() + ttlNanos;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
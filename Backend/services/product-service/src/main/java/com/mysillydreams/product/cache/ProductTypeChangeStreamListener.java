@@ -0,0 +1,76 @@
+package com.mysillydreams.product.cache;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.models.ProductType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Broadcasts product type changes made by any replica to this instance by tailing a Mongo change
+ * stream on the product_types collection and republishing each change as a local
+ * {@link ProductTypeChangedEvent}. Change streams need a replica set, so this is opt-in; without it
+ * each instance only sees its own writes and relies on the cache TTL for the others.
+ */
+@Component
+@ConditionalOnProperty(name = "product.cache.product-types.change-stream.enabled", havingValue = "true")
+public class ProductTypeChangeStreamListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductTypeChangeStreamListener.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private MessageListenerContainer container;
+
+    public ProductTypeChangeStreamListener(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void start() {
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        ChangeStreamRequest<Document> request = ChangeStreamRequest.builder()
+                .collection(mongoTemplate.getCollectionName(ProductType.class))
+                .publishTo(this::onMessage)
+                .build();
+        container.register(request, Document.class);
+        container.start();
+        log.info("Listening for product type changes on the Mongo change stream");
+    }
+
+    @Override
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return container != null && container.isRunning();
+    }
+
+    private void onMessage(Message<ChangeStreamDocument<Document>, Document> message) {
+        BsonDocument documentKey = message.getRaw() == null ? null : message.getRaw().getDocumentKey();
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        // Collection-level events (drop, rename, invalidate) carry no document key: drop everything.
+        String productTypeId = id == null ? null
+                : id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue()
+                : null;
+        eventPublisher.publishEvent(new ProductTypeChangedEvent(productTypeId));
+    }
+}
@@ -0,0 +1,145 @@
+package com.mysillydreams.product.config;
+
+import com.mysillydreams.product.security.ProductAuthorities;
+import com.mysillydreams.product.security.RoleAwareJwtAuthenticationToken;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Converts a validated JWT into a {@link RoleAwareJwtAuthenticationToken}, caching the work.
+ * <p>
+ * The gateway replays the same tokens many times a minute, so the realm roles resolved for a token
+ * are remembered by its {@code jti} until the token expires. Authority lists are interned by role
+ * set: every token with the same roles shares one immutable list of authority objects and its
+ * precomputed admin/vendor flags. Only the token object itself is created per request, since
+ * Spring Security attaches request-specific details to it.
+ */
+public class CachingJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private static final String ROLE_PREFIX = "ROLE_"; // Prefix with ROLE_ for Spring Security
+    private static final int MAX_ROLE_SETS = 1024; // Distinct role combinations; beyond this, sets are built per token
+
+    private final ConcurrentHashMap<List<String>, RoleSet> roleSets = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, TokenEntry> tokens; // By jti, guarded by lock
+
+    public CachingJwtAuthenticationConverter(int maxTokens) {
+        this.tokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenEntry> eldest) {
+                return size() > maxTokens;
+            }
+        };
+    }
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        RoleSet roles = jwt.getId() == null ? roleSetFor(jwt) : roleSetForToken(jwt);
+        return new RoleAwareJwtAuthenticationToken(jwt, roles.authorities, roles.admin, roles.vendor);
+    }
+
+    private RoleSet roleSetForToken(Jwt jwt) {
+        Instant now = Instant.now();
+        lock.lock();
+        try {
+            TokenEntry entry = tokens.get(jwt.getId());
+            if (entry != null && entry.expiresAt.isAfter(now)) {
+                return entry.roles;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        RoleSet roles = roleSetFor(jwt);
+        // Tokens without an expiry are not cached by id; they still share the interned role set.
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isAfter(now)) {
+            lock.lock();
+            try {
+                tokens.put(jwt.getId(), new TokenEntry(roles, jwt.getExpiresAt()));
+                purgeExpired(now);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return roles;
+    }
+
+    private RoleSet roleSetFor(Jwt jwt) {
+        List<String> roles = realmRoles(jwt);
+        RoleSet interned = roleSets.get(roles);
+        if (interned != null) {
+            return interned;
+        }
+        RoleSet built = new RoleSet(roles);
+        if (roleSets.size() >= MAX_ROLE_SETS) {
+            return built;
+        }
+        RoleSet raced = roleSets.putIfAbsent(List.copyOf(roles), built);
+        return raced != null ? raced : built;
+    }
+
+    // Keycloak realm role names from the realm_access.roles claim, without prefix; empty if the claim is absent.
+    private static List<String> realmRoles(Jwt jwt) {
+        Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
+        if (realmAccess == null || !(realmAccess.get("roles") instanceof Collection<?> claimed)) {
+            return List.of();
+        }
+        List<String> roles = new ArrayList<>(claimed.size());
+        for (Object role : claimed) {
+            if (role instanceof String roleName) {
+                roles.add(roleName);
+            }
+        }
+        return roles;
+    }
+
+    // Called with lock held. Expired tokens are dropped a few at a time from the eldest end, so the
+    // map does not fill up with dead entries between LRU evictions.
+    private void purgeExpired(Instant now) {
+        Iterator<TokenEntry> eldest = tokens.values().iterator();
+        for (int checked = 0; checked < 4 && eldest.hasNext(); checked++) {
+            if (!eldest.next().expiresAt.isAfter(now)) {
+                eldest.remove();
+            }
+        }
+    }
+
+    private static final class TokenEntry {
+        private final RoleSet roles;
+        private final Instant expiresAt;
+
+        private TokenEntry(RoleSet roles, Instant expiresAt) {
+            this.roles = roles;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class RoleSet {
+        private final List<GrantedAuthority> authorities;
+        private final boolean admin;
+        private final boolean vendor;
+
+        private RoleSet(List<String> roles) {
+            List<GrantedAuthority> granted = new ArrayList<>(roles.size());
+            for (String role : roles) {
+                granted.add(new SimpleGrantedAuthority(ROLE_PREFIX + role));
+            }
+            this.authorities = List.copyOf(granted);
+            this.admin = granted.stream().anyMatch(a -> a.getAuthority().equals(ProductAuthorities.ROLE_ADMIN));
+            this.vendor = granted.stream().anyMatch(a -> a.getAuthority().equals(ProductAuthorities.ROLE_VENDOR));
+        }
+    }
+}
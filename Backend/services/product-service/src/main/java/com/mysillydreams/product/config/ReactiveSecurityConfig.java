@@ -0,0 +1,47 @@
+package com.mysillydreams.product.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * Security for the reactive deployment mode (spring.main.web-application-type=reactive). Mirrors
+ * {@link SecurityConfig}: the same public GET routes and the same realm role mapping.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity(useAuthorizationManager = true) // Enables @PreAuthorize on Mono/Flux methods
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveJwtAuthenticationConverterAdapter reactiveJwtAuthenticationConverter) {
+        http
+            .csrf(ServerHttpSecurity.CsrfSpec::disable) // Bearer-token API without browser sessions; the servlet chain skips CSRF for bearer requests too
+            .authorizeExchange(exchanges -> exchanges
+                .pathMatchers(HttpMethod.GET, "/api/v1/products", "/api/v1/products/**").permitAll()
+                .pathMatchers(HttpMethod.GET, "/api/v1/product-types", "/api/v1/product-types/**").permitAll()
+                .anyExchange().authenticated()
+            )
+            .oauth2ResourceServer(oauth2 -> oauth2
+                .jwt(jwt -> jwt
+                    .jwtAuthenticationConverter(reactiveJwtAuthenticationConverter)
+                )
+            );
+        return http.build();
+    }
+
+    @Bean
+    public ReactiveJwtAuthenticationConverterAdapter reactiveJwtAuthenticationConverter(
+            @Value("${product.security.token-cache.max-size:10000}") int maxTokens) {
+        return new ReactiveJwtAuthenticationConverterAdapter(new CachingJwtAuthenticationConverter(maxTokens));
+    }
+}
@@ -0,0 +1,88 @@
+package com.mysillydreams.product.controllers;
+
+import com.mysillydreams.product.outbox.ProductChangeFeed;
+import com.mysillydreams.product.pagination.PageLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+/**
+ * Incremental product and product type changes for downstream caches and indexers. A consumer keeps
+ * the sequence of the last event it processed and resumes from it; after a gap longer than the outbox
+ * retention it has to re-read the catalogue (e.g. the NDJSON export) and continue from the latest offset.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/v1/product-changes")
+public class ProductChangeController {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeController.class);
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final ProductChangeFeed changeFeed;
+    private final Duration maxWait;
+    private final Duration streamTimeout;
+
+    public ProductChangeController(ProductChangeFeed changeFeed,
+                                   @Value("${product.changes.long-poll.max-wait:PT30S}") Duration maxWait,
+                                   @Value("${product.changes.sse.timeout:PT30M}") Duration streamTimeout) {
+        this.changeFeed = changeFeed;
+        this.maxWait = maxWait;
+        this.streamTimeout = streamTimeout;
+    }
+
+    /**
+     * Long-poll: returns the events after the offset, or waits up to {@code wait} seconds for the next one.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public DeferredResult<ResponseEntity<?>> pollChanges(@RequestParam(defaultValue = "0") long after,
+                                                         @RequestParam(required = false) Integer limit,
+                                                         @RequestParam(defaultValue = "0") int wait) {
+        if (after < 0 || wait < 0) {
+            DeferredResult<ResponseEntity<?>> invalid = new DeferredResult<>();
+            invalid.setResult(ResponseEntity.badRequest().body("Offset and wait must not be negative."));
+            return invalid;
+        }
+        Duration waitFor = Duration.ofSeconds(wait);
+        return changeFeed.poll(after, PageLimits.pageSize(limit), waitFor.compareTo(maxWait) > 0 ? maxWait : waitFor);
+    }
+
+    /**
+     * Server-Sent Events: streams every event after the offset, then new ones as they happen. A
+     * reconnecting client's Last-Event-ID takes precedence over {@code after}.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<SseEmitter> streamChanges(@RequestParam(defaultValue = "0") long after,
+                                                    @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        long offset = after;
+        if (lastEventId != null && !lastEventId.isEmpty()) {
+            try {
+                offset = Long.parseLong(lastEventId);
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (offset < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Opening product change stream after offset {}", offset);
+        SseEmitter emitter = changeFeed.subscribe(offset, PageLimits.DEFAULT_PAGE_SIZE, streamTimeout);
+        if (emitter == null) {
+            log.warn("Rejecting product change stream: subscriber limit reached");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build(); // Clients can fall back to long-polling
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -1,65 +1,105 @@
 package com.mysillydreams.product.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.dtos.BulkImportReportDto;
 import com.mysillydreams.product.dtos.ProductCreateDto;
+import com.mysillydreams.product.dtos.ProductPageDto;
+import com.mysillydreams.product.dtos.ProductSearchHitDto;
+import com.mysillydreams.product.dtos.ProductSearchResultDto;
 import com.mysillydreams.product.dtos.ProductUpdateDto;
+import com.mysillydreams.product.http.EntityTags;
 import com.mysillydreams.product.models.Product;
 import com.mysillydreams.product.models.ProductType;
-import com.mysillydreams.product.models.FieldDefinition;
-import com.mysillydreams.product.models.CustomFieldType;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
+import com.mysillydreams.product.pagination.CursorCodec;
+import com.mysillydreams.product.pagination.PageLimits;
+import com.mysillydreams.product.projection.ProductFields;
 import com.mysillydreams.product.repositories.ProductRepository;
-import com.mysillydreams.product.repositories.ProductTypeRepository;
+import com.mysillydreams.product.search.ProductAttributeSearchService;
+import com.mysillydreams.product.search.ProductSearchIndex;
+import com.mysillydreams.product.security.ProductAuthorities;
+import com.mysillydreams.product.security.ProductSecurity;
+import com.mysillydreams.product.services.ProductBulkImportService;
+import com.mysillydreams.product.services.ProductUpdateService;
+import com.mysillydreams.product.validation.AttributeValidatorCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1/products")
 public class ProductController {
 
     private static final Logger log = LoggerFactory.getLogger(ProductController.class);
+    private static final String ATTRIBUTE_FILTER_PREFIX = "attr.";
+    private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
     private final ProductRepository productRepository;
-    private final ProductTypeRepository productTypeRepository;
+    private final ProductTypeCache productTypeCache;
+    private final AttributeValidatorCache attributeValidators;
+    private final ProductBulkImportService bulkImportService;
+    private final ProductUpdateService productUpdateService;
+    private final ProductSecurity productSecurity;
+    private final ProductAttributeSearchService attributeSearchService;
+    private final ProductSearchIndex searchIndex;
+    private final ProductChangeOutbox changeOutbox;
+    private final ObjectWriter ndjsonWriter;
+    private final ObjectReader bulkItemReader;
 
-    public ProductController(ProductRepository productRepository, ProductTypeRepository productTypeRepository) {
+    public ProductController(ProductRepository productRepository, ProductTypeCache productTypeCache,
+                             AttributeValidatorCache attributeValidators, ProductBulkImportService bulkImportService,
+                             ProductUpdateService productUpdateService, ProductSecurity productSecurity,
+                             ProductAttributeSearchService attributeSearchService, ProductSearchIndex searchIndex,
+                             ProductChangeOutbox changeOutbox, ObjectMapper objectMapper) {
         this.productRepository = productRepository;
-        this.productTypeRepository = productTypeRepository;
-    }
-
-    private String validateCustomAttributes(Map<String, Object> customAttributes, List<FieldDefinition> fieldDefinitions) {
-        if (customAttributes == null) {
-            if (fieldDefinitions.stream().anyMatch(FieldDefinition::isRequired)) {
-                return "Required custom attributes map is missing.";
-            }
-            return null; 
-        }
-        for (FieldDefinition def : fieldDefinitions) {
-            Object value = customAttributes.get(def.getFieldName());
-            if (def.isRequired() && value == null) {
-                return String.format("Required field '%s' (%s) is missing.", def.getFieldLabel(), def.getFieldName());
-            }
-            if (value != null) {
-                // Placeholder for more sophisticated type validation based on def.getFieldType()
-                // e.g., check if Number for CustomFieldType.NUMBER, boolean for BOOLEAN,
-                // if value is in def.getOptions() for SELECT/MULTI_SELECT.
-            }
-        }
-        // Optional: Check for extraneous attributes not defined in ProductType
-        // for (String key : customAttributes.keySet()) {
-        //    if (fieldDefinitions.stream().noneMatch(def -> def.getFieldName().equals(key))) {
-        //        return String.format("Extraneous attribute '%s' not defined for this product type.", key);
-        //    }
-        // }
-        return null; // No errors found
+        this.productTypeCache = productTypeCache;
+        this.attributeValidators = attributeValidators;
+        this.bulkImportService = bulkImportService;
+        this.productUpdateService = productUpdateService;
+        this.productSecurity = productSecurity;
+        this.attributeSearchService = attributeSearchService;
+        this.searchIndex = searchIndex;
+        this.changeOutbox = changeOutbox;
+        // One line per document; the response stream must stay open between documents.
+        this.ndjsonWriter = objectMapper.writerFor(Product.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.bulkItemReader = objectMapper.readerFor(ProductCreateDto.class);
     }
 
     @PostMapping
@@ -70,13 +110,13 @@ public class ProductController {
         if (productCreateDto.getProductTypeId() == null) {
             return ResponseEntity.badRequest().body("ProductType ID is required.");
         }
-        Optional<ProductType> productTypeOpt = productTypeRepository.findById(productCreateDto.getProductTypeId());
+        Optional<ProductType> productTypeOpt = productTypeCache.findById(productCreateDto.getProductTypeId());
         if (productTypeOpt.isEmpty()) {
             return ResponseEntity.badRequest().body("Invalid ProductType ID: " + productCreateDto.getProductTypeId());
         }
         ProductType productType = productTypeOpt.get();
 
-        String validationError = validateCustomAttributes(productCreateDto.getCustomAttributes(), productType.getFieldDefinitions());
+        String validationError = attributeValidators.forType(productType).validate(productCreateDto.getCustomAttributes());
         if (validationError != null) {
             return ResponseEntity.badRequest().body("Validation error in custom attributes: " + validationError);
         }
@@ -87,95 +127,302 @@ public class ProductController {
         product.setBasePrice(productCreateDto.getBasePrice());
         product.setProductTypeId(productCreateDto.getProductTypeId());
         product.setCustomAttributes(productCreateDto.getCustomAttributes());
+        product.setVersion(0L);
+        product.setLastModified(Instant.now());
 
-        Jwt jwt = (Jwt) authentication.getPrincipal();
-        String keycloakUserId = jwt.getSubject();
-        boolean isAdmin = authentication.getAuthorities().stream()
-                            .map(GrantedAuthority::getAuthority)
-                            .anyMatch(role -> role.equals("ROLE_admin"));
-
-        if (isAdmin && productCreateDto.getVendorId() != null) {
-            product.setVendorId(productCreateDto.getVendorId());
-        } else if (authentication.getAuthorities().stream().anyMatch(role -> role.getAuthority().equals("ROLE_vendor"))) {
-            product.setVendorId(keycloakUserId); 
-        } else if (isAdmin) {
-            product.setVendorId("admin_" + keycloakUserId); 
-            log.info("Admin creating product without specific vendorId, assigning admin as owner: {}", product.getVendorId());
-        } else {
+        Function<String, String> vendorIdResolver = ProductAuthorities.vendorIdResolver(authentication);
+        if (vendorIdResolver == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("User role not permitted to set vendor ID or create product without it.");
         }
-        
-        Product savedProduct = productRepository.save(product);
+        product.setVendorId(vendorIdResolver.apply(productCreateDto.getVendorId()));
+        if (product.getVendorId().startsWith(ProductAuthorities.ADMIN_VENDOR_PREFIX)) {
+            log.info("Admin creating product without specific vendorId, assigning admin as owner: {}", product.getVendorId());
+        }
+
+        Product savedProduct = changeOutbox.write(() -> productRepository.save(product),
+                saved -> ProductChangeEvent.of(ProductChangeEvent.Operation.CREATED, saved));
+        searchIndex.index(savedProduct);
         log.info("Product created successfully with ID: {}", savedProduct.getId());
-        return new ResponseEntity<>(savedProduct, HttpStatus.CREATED);
+        return withValidators(ResponseEntity.status(HttpStatus.CREATED), savedProduct).body(savedProduct);
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAnyAuthority('ROLE_admin', 'ROLE_vendor')")
+    public ResponseEntity<?> bulkImportProducts(InputStream body, Authentication authentication) throws IOException {
+        log.info("Request to bulk import products");
+        Function<String, String> vendorIdResolver = ProductAuthorities.vendorIdResolver(authentication);
+        if (vendorIdResolver == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("User role not permitted to set vendor ID or create product without it.");
+        }
+        // The same reader handles a JSON array and newline-delimited documents, one item at a time.
+        try (MappingIterator<ProductCreateDto> items = bulkItemReader.readValues(body)) {
+            BulkImportReportDto report = bulkImportService.importProducts(items, vendorIdResolver);
+            HttpStatus status = report.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(report);
+        }
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAuthority('ROLE_admin') or (hasAuthority('ROLE_vendor') and @productSecurity.isOwner(authentication, #id))")
-    public ResponseEntity<?> updateProduct(@PathVariable String id, @RequestBody ProductUpdateDto productUpdateDto, Authentication authentication) {
+    public ResponseEntity<?> updateProduct(@PathVariable String id, @RequestBody ProductUpdateDto productUpdateDto,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           Authentication authentication) {
         log.info("Request to update product with ID: {}", id);
-        Optional<Product> productOptional = productRepository.findById(id);
-        if (productOptional.isEmpty()) {
-            return ResponseEntity.notFound().build();
+        return toResponse(id, productUpdateService.update(id, productUpdateDto, ifMatch));
+    }
+
+    @PatchMapping(value = "/{id}", consumes = MERGE_PATCH_JSON_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_admin') or (hasAuthority('ROLE_vendor') and @productSecurity.isOwner(authentication, #id))")
+    public ResponseEntity<?> patchProduct(@PathVariable String id, @RequestBody Map<String, Object> mergePatch,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          Authentication authentication) {
+        log.info("Request to patch product with ID: {}", id);
+        return toResponse(id, productUpdateService.patch(id, mergePatch, ifMatch));
+    }
+
+    private ResponseEntity<?> toResponse(String id, ProductUpdateService.UpdateResult result) {
+        switch (result.getStatus()) {
+            case UPDATED:
+                log.info("Product updated successfully with ID: {}", id);
+                return withValidators(ResponseEntity.ok(), result.getProduct()).body(result.getProduct());
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            case PRECONDITION_FAILED:
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Product has been modified since it was read.");
+            case INVALID:
+                return ResponseEntity.badRequest().body(result.getError());
+            default:
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Product's type definition not found. This indicates a data inconsistency.");
         }
-        Product existingProduct = productOptional.get();
+    }
 
-        Optional<ProductType> productTypeOpt = productTypeRepository.findById(existingProduct.getProductTypeId());
-        if (productTypeOpt.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Product's type definition not found. This indicates a data inconsistency.");
+    @GetMapping
+    @PreAuthorize("permitAll()") // As per SecurityConfig
+    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String fields) {
+        log.info("Request to list products after cursor: {}", cursor);
+        int pageSize = PageLimits.pageSize(limit);
+        // Fetch one extra document to learn whether another page exists without a count query.
+        Pageable pageable = PageRequest.ofSize(pageSize + 1);
+
+        String lastId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                lastId = CursorCodec.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor.");
+            }
         }
-        ProductType productType = productTypeOpt.get();
+        ProductFields selection;
+        try {
+            selection = ProductFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        List<Product> products;
+        if (selection != null) {
+            products = productRepository.findPage(lastId, pageSize + 1, selection);
+        } else if (lastId == null) {
+            products = productRepository.findAllByOrderByIdAsc(pageable);
+        } else {
+            products = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, pageable);
+        }
+
+        String nextCursor = null;
+        if (products.size() > pageSize) {
+            products = products.subList(0, pageSize);
+            nextCursor = CursorCodec.encode(products.get(pageSize - 1).getId());
+        }
+        // The page is tagged by its members, so an unchanged page is answered with 304 and not serialised.
+        return ResponseEntity.ok()
+                .eTag(EntityTags.ofAll(products, Product::getId, Product::getVersion, variant(selection)))
+                .body(new ProductPageDto(render(products, selection), nextCursor));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("permitAll()") // As per SecurityConfig
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        log.info("Request to stream all products as NDJSON");
+        // Documents are written one at a time straight from the Mongo cursor, so memory use
+        // does not depend on catalogue size. The cursor is opened on the async response thread.
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<Product> products = productRepository.streamAllByOrderByIdAsc()) {
+                writeNdjson(products.iterator(), outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
-        if (productUpdateDto.getCustomAttributes() != null) {
-            String validationError = validateCustomAttributes(productUpdateDto.getCustomAttributes(), productType.getFieldDefinitions());
-            if (validationError != null) {
-                return ResponseEntity.badRequest().body("Validation error in custom attributes: " + validationError);
+    private void writeNdjson(Iterator<Product> products, OutputStream outputStream) throws IOException {
+        if (!products.hasNext()) {
+            return;
+        }
+        try (SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+            while (products.hasNext()) {
+                writer.write(products.next());
             }
-            existingProduct.setCustomAttributes(productUpdateDto.getCustomAttributes());
         }
+        outputStream.write('\n'); // The separator only goes between documents; terminate the last line too
+        outputStream.flush();
+    }
 
-        if (productUpdateDto.getName() != null) existingProduct.setName(productUpdateDto.getName());
-        if (productUpdateDto.getDescription() != null) existingProduct.setDescription(productUpdateDto.getDescription());
-        if (productUpdateDto.getBasePrice() != null) existingProduct.setBasePrice(productUpdateDto.getBasePrice());
-        
-        Product updatedProduct = productRepository.save(existingProduct);
-        log.info("Product updated successfully with ID: {}", updatedProduct.getId());
-        return ResponseEntity.ok(updatedProduct);
+    @GetMapping("/filter")
+    @PreAuthorize("permitAll()") // As per SecurityConfig
+    public ResponseEntity<?> filterProducts(@RequestParam String productTypeId,
+                                            @RequestParam(required = false) List<String> facets,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam MultiValueMap<String, String> params) {
+        log.info("Request to filter products of type: {}", productTypeId);
+        // Attribute filters are passed as attr.<fieldName>=<value>, e.g. attr.color=red,blue&attr.weight=1..5
+        Map<String, String> filters = new LinkedHashMap<>();
+        params.forEach((name, values) -> {
+            if (name.startsWith(ATTRIBUTE_FILTER_PREFIX) && !values.isEmpty()) {
+                filters.put(name.substring(ATTRIBUTE_FILTER_PREFIX.length()), values.get(0));
+            }
+        });
+        try {
+            return ResponseEntity.ok(attributeSearchService.search(productTypeId, filters,
+                    facets == null ? List.of() : facets, cursor, PageLimits.pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    @GetMapping
+    @GetMapping("/search")
     @PreAuthorize("permitAll()") // As per SecurityConfig
-    public ResponseEntity<List<Product>> getAllProducts() {
-        log.info("Request to list all products");
-        List<Product> products = productRepository.findAll();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> searchProducts(@RequestParam("q") String query,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(required = false) Integer size) {
+        log.info("Request to search products for: {}", query);
+        if (page < 0) {
+            return ResponseEntity.badRequest().body("Page must not be negative.");
+        }
+        int pageSize = PageLimits.pageSize(size);
+        List<ProductSearchIndex.SearchHit> hits = searchIndex.search(query);
+        int from = (int) Math.min((long) page * pageSize, hits.size());
+        List<ProductSearchIndex.SearchHit> pageHits = hits.subList(from, Math.min(from + pageSize, hits.size()));
+
+        Map<String, Product> productsById = new HashMap<>();
+        List<String> ids = new ArrayList<>(pageHits.size());
+        pageHits.forEach(hit -> ids.add(hit.getProductId()));
+        productRepository.findAllById(ids).forEach(product -> productsById.put(product.getId(), product));
+
+        List<ProductSearchHitDto> results = new ArrayList<>(pageHits.size());
+        for (ProductSearchIndex.SearchHit hit : pageHits) {
+            Product product = productsById.get(hit.getProductId());
+            if (product != null) { // May have been deleted since it was matched
+                results.add(new ProductSearchHitDto(product, hit.getScore()));
+            }
+        }
+        return ResponseEntity.ok(new ProductSearchResultDto(query, hits.size(), page, pageSize, results));
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("permitAll()") // As per SecurityConfig
-    public ResponseEntity<Product> getProductById(@PathVariable String id) {
+    public ResponseEntity<?> getProductById(@PathVariable String id, @RequestParam(required = false) String fields,
+                                            WebRequest webRequest) {
         log.info("Request to get product by ID: {}", id);
-        Optional<Product> product = productRepository.findById(id);
-        return product.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        ProductFields selection;
+        try {
+            selection = ProductFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        if (isConditional(webRequest)) {
+            // Revalidation is answered from the version fields alone; the body is only read if it changed.
+            Optional<Product> header = productRepository.findHeaderById(id);
+            if (header.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String eTag = eTag(header.get(), selection);
+            if (webRequest.checkNotModified(eTag, EntityTags.lastModifiedMillis(header.get().getLastModified()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        Optional<Product> product = selection == null
+                ? productRepository.findById(id)
+                : productRepository.findById(id, selection);
+        return product.<ResponseEntity<?>>map(p -> withValidators(ResponseEntity.ok(), p, selection)
+                        .body(selection == null ? p : selection.render(p)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
     
     @GetMapping("/vendor/{vendorId}")
     @PreAuthorize("isAuthenticated()") // Or more specific if needed
-    public ResponseEntity<List<Product>> getProductsByVendorId(@PathVariable String vendorId) {
+    public ResponseEntity<?> getProductsByVendorId(@PathVariable String vendorId,
+                                                   @RequestParam(required = false) String fields) {
         log.info("Request to list products for vendor ID: {}", vendorId);
-        List<Product> products = productRepository.findByVendorId(vendorId);
-        return ResponseEntity.ok(products);
+        ProductFields selection;
+        try {
+            selection = ProductFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        List<Product> products = selection == null
+                ? productRepository.findByVendorId(vendorId)
+                : productRepository.findByVendorId(vendorId, selection);
+        return ResponseEntity.ok()
+                .eTag(EntityTags.ofAll(products, Product::getId, Product::getVersion, variant(selection)))
+                .body(render(products, selection));
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAuthority('ROLE_admin') or (hasAuthority('ROLE_vendor') and @productSecurity.isOwner(authentication, #id))")
-    public ResponseEntity<Void> deleteProduct(@PathVariable String id, Authentication authentication) {
+    public ResponseEntity<?> deleteProduct(@PathVariable String id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           Authentication authentication) {
         log.info("Request to delete product with ID: {}", id);
-        if (!productRepository.existsById(id)) {
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Product has been modified since it was read.");
+        }
+        // A single conditional delete; only a miss needs a second read to tell 404 from 412.
+        boolean deleted = changeOutbox.write(() -> productRepository.deleteIfVersion(id, expectedVersions),
+                removed -> removed ? ProductChangeEvent.deleted(ProductChangeEvent.EntityType.PRODUCT, id) : null);
+        if (!deleted) {
+            if (expectedVersions != null && productRepository.existsById(id)) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Product has been modified since it was read.");
+            }
             return ResponseEntity.notFound().build();
         }
-        productRepository.deleteById(id);
+        productSecurity.evict(id);
+        searchIndex.remove(id);
         log.info("Product with ID: {} deleted successfully", id);
         return ResponseEntity.noContent().build();
     }
+
+    private static String eTag(Product product, ProductFields selection) {
+        return EntityTags.of(product.getId(), product.getVersion(), variant(selection));
+    }
+
+    private static String variant(ProductFields selection) {
+        return selection == null ? null : selection.variant();
+    }
+
+    private static List<?> render(List<Product> products, ProductFields selection) {
+        return selection == null ? products : products.stream().map(selection::render).toList();
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, Product product) {
+        return withValidators(builder, product, null);
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, Product product,
+                                                             ProductFields selection) {
+        builder.eTag(eTag(product, selection));
+        if (product.getLastModified() != null) {
+            builder.lastModified(product.getLastModified());
+        }
+        return builder;
+    }
+
+    private static boolean isConditional(WebRequest webRequest) {
+        return webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
 }
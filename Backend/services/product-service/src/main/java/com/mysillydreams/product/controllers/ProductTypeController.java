@@ -1,26 +1,45 @@
 package com.mysillydreams.product.controllers;
 
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.http.EntityTags;
 import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
 import com.mysillydreams.product.repositories.ProductTypeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1/product-types")
 public class ProductTypeController {
 
     private static final Logger log = LoggerFactory.getLogger(ProductTypeController.class);
     private final ProductTypeRepository productTypeRepository;
+    private final ProductTypeCache productTypeCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductChangeOutbox changeOutbox;
 
-    public ProductTypeController(ProductTypeRepository productTypeRepository) {
+    public ProductTypeController(ProductTypeRepository productTypeRepository, ProductTypeCache productTypeCache,
+                                 ApplicationEventPublisher eventPublisher, ProductChangeOutbox changeOutbox) {
         this.productTypeRepository = productTypeRepository;
+        this.productTypeCache = productTypeCache;
+        this.eventPublisher = eventPublisher;
+        this.changeOutbox = changeOutbox;
     }
 
     @PostMapping("/admin")
@@ -37,17 +56,24 @@ public class ProductTypeController {
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
 
-        ProductType savedProductType = productTypeRepository.save(productType);
+        productType.setVersion(0L);
+        productType.setLastModified(Instant.now());
+        ProductType savedProductType = changeOutbox.write(() -> productTypeRepository.save(productType),
+                saved -> ProductChangeEvent.of(ProductChangeEvent.Operation.CREATED, saved));
+        eventPublisher.publishEvent(new ProductTypeChangedEvent(savedProductType.getId()));
         log.info("Product type created successfully with ID: {}", savedProductType.getId());
-        return new ResponseEntity<>(savedProductType, HttpStatus.CREATED);
+        return withValidators(ResponseEntity.status(HttpStatus.CREATED), savedProductType).body(savedProductType);
     }
 
     @GetMapping
     @PreAuthorize("permitAll()") // As per SecurityConfig, or isAuthenticated()
     public ResponseEntity<List<ProductType>> getAllProductTypes() {
         log.info("Request to list all product types");
-        List<ProductType> productTypes = productTypeRepository.findAll();
-        return ResponseEntity.ok(productTypes);
+        List<ProductType> productTypes = productTypeCache.findAll();
+        // Polling clients revalidate with If-None-Match and get a 304 instead of the full list.
+        return ResponseEntity.ok()
+                .eTag(EntityTags.ofAll(productTypes, ProductType::getId, ProductType::getVersion))
+                .body(productTypes);
     }
 
     @GetMapping("/admin/{id}")
@@ -55,7 +81,7 @@ public class ProductTypeController {
     public ResponseEntity<ProductType> getProductTypeById(@PathVariable String id) {
         log.info("Admin request to get product type by ID: {}", id);
         Optional<ProductType> productTypeOptional = productTypeRepository.findById(id);
-        return productTypeOptional.map(ResponseEntity::ok)
+        return productTypeOptional.map(productType -> withValidators(ResponseEntity.ok(), productType).body(productType))
                                   .orElseGet(() -> {
                                       log.warn("Product type with ID: {} not found", id);
                                       return ResponseEntity.notFound().build();
@@ -64,45 +90,83 @@ public class ProductTypeController {
 
     @PutMapping("/admin/{id}")
     @PreAuthorize("hasAuthority('ROLE_admin')")
-    public ResponseEntity<ProductType> updateProductType(@PathVariable String id, @RequestBody ProductType productTypeDetails) {
+    public ResponseEntity<ProductType> updateProductType(@PathVariable String id, @RequestBody ProductType productTypeDetails,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Admin request to update product type with ID: {}", id);
-        Optional<ProductType> existingProductTypeOptional = productTypeRepository.findById(id);
-        if (existingProductTypeOptional.isEmpty()) {
-            log.warn("Product type with ID: {} not found for update", id);
-            return ResponseEntity.notFound().build();
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            log.warn("Product type with ID: {} was modified since the client read it", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
-
-        ProductType existingProductType = existingProductTypeOptional.get();
-        if (productTypeDetails.getName() != null && !productTypeDetails.getName().equals(existingProductType.getName())) {
+        if (productTypeDetails.getName() != null) {
             Optional<ProductType> conflictingType = productTypeRepository.findByName(productTypeDetails.getName());
             if (conflictingType.isPresent() && !conflictingType.get().getId().equals(id)) {
                  log.warn("Product type name '{}' conflicts with an existing type during update", productTypeDetails.getName());
                  return ResponseEntity.status(HttpStatus.CONFLICT).build();
             }
-            existingProductType.setName(productTypeDetails.getName());
         }
-        
-        existingProductType.setDescription(productTypeDetails.getDescription());
+
+        Update update = new Update().set("description", productTypeDetails.getDescription());
+        if (productTypeDetails.getName() != null) {
+            update.set("name", productTypeDetails.getName());
+        }
         if (productTypeDetails.getFieldDefinitions() != null) {
-            existingProductType.setFieldDefinitions(productTypeDetails.getFieldDefinitions());
+            update.set("fieldDefinitions", productTypeDetails.getFieldDefinitions());
         }
+        update.inc("version", 1).set("lastModified", Instant.now());
 
-        ProductType updatedProductType = productTypeRepository.save(existingProductType);
+        // The version check is part of the write, so two writers holding the same tag cannot both succeed.
+        ProductType updatedProductType = changeOutbox.write(
+                () -> productTypeRepository.updateIfVersion(id, expectedVersions, update),
+                updated -> updated == null ? null : ProductChangeEvent.of(ProductChangeEvent.Operation.UPDATED, updated));
+        if (updatedProductType == null) {
+            return writeMissed(id, expectedVersions, "update");
+        }
+        eventPublisher.publishEvent(new ProductTypeChangedEvent(id));
         log.info("Product type with ID: {} updated successfully", id);
-        return ResponseEntity.ok(updatedProductType);
+        return withValidators(ResponseEntity.ok(), updatedProductType).body(updatedProductType);
     }
 
     @DeleteMapping("/admin/{id}")
     @PreAuthorize("hasAuthority('ROLE_admin')")
-    public ResponseEntity<Void> deleteProductType(@PathVariable String id) {
+    public ResponseEntity<Void> deleteProductType(@PathVariable String id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Admin request to delete product type with ID: {}", id);
-        if (!productTypeRepository.existsById(id)) {
-            log.warn("Product type with ID: {} not found for deletion", id);
-            return ResponseEntity.notFound().build();
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            log.warn("Product type with ID: {} was modified since the client read it", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
         // TODO: Consider implications: prevent deletion if products of this type exist.
-        productTypeRepository.deleteById(id);
+        boolean deleted = changeOutbox.write(() -> productTypeRepository.deleteIfVersion(id, expectedVersions),
+                removed -> removed ? ProductChangeEvent.deleted(ProductChangeEvent.EntityType.PRODUCT_TYPE, id) : null);
+        if (!deleted) {
+            return writeMissed(id, expectedVersions, "deletion");
+        }
+        eventPublisher.publishEvent(new ProductTypeChangedEvent(id));
         log.info("Product type with ID: {} deleted successfully", id);
         return ResponseEntity.noContent().build();
     }
+
+    // Only a failed conditional write needs the extra read to tell 412 from 404.
+    private <T> ResponseEntity<T> writeMissed(String id, Set<Long> expectedVersions, String operation) {
+        if (expectedVersions != null && productTypeRepository.existsById(id)) {
+            log.warn("Product type with ID: {} was modified since the client read it", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        log.warn("Product type with ID: {} not found for {}", id, operation);
+        return ResponseEntity.notFound().build();
+    }
+
+    private static String eTag(ProductType productType) {
+        return EntityTags.of(productType.getId(), productType.getVersion());
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, ProductType productType) {
+        builder.eTag(eTag(productType));
+        if (productType.getLastModified() != null) {
+            builder.lastModified(productType.getLastModified());
+        }
+        return builder;
+    }
 }
@@ -0,0 +1,18 @@
+package com.mysillydreams.product.dtos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BulkImportReportDto {
+    private int received;
+    private int created;
+    private int rejected;
+    private int failed;
+    private long durationMillis;
+    private String error; // Set when the upload could not be read to the end; items before it were still processed
+    private List<BulkItemResultDto> results = new ArrayList<>();
+}
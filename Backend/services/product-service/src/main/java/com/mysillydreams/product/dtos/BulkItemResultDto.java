@@ -0,0 +1,17 @@
+package com.mysillydreams.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResultDto {
+    public enum Status { CREATED, REJECTED, FAILED }
+
+    private int index; // Position of the item in the uploaded file, starting at 0
+    private Status status;
+    private String id; // Set for CREATED items
+    private String error; // Set for REJECTED (validation) and FAILED (write) items
+}
@@ -0,0 +1,13 @@
+package com.mysillydreams.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCountDto {
+    private Object value;
+    private long count;
+}
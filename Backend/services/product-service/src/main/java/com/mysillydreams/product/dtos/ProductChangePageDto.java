@@ -0,0 +1,15 @@
+package com.mysillydreams.product.dtos;
+
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangePageDto {
+    private List<ProductChangeEvent> events;
+    private long nextOffset; // Pass back as 'after' to continue; equals the request's offset when there is nothing new
+}
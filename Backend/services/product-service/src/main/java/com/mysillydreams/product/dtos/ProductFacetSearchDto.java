@@ -0,0 +1,17 @@
+package com.mysillydreams.product.dtos;
+
+import com.mysillydreams.product.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetSearchDto {
+    private List<Product> items;
+    private String nextCursor; // null when there are no more pages
+    private Map<String, List<FacetCountDto>> facets; // Counts over every product matching the filters, keyed by field name
+}
@@ -0,0 +1,14 @@
+package com.mysillydreams.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageDto {
+    private List<?> items; // Products, or maps holding only the requested fields for sparse fieldsets
+    private String nextCursor; // null when there are no more pages
+}
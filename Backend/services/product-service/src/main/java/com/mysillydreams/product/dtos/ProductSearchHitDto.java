@@ -0,0 +1,14 @@
+package com.mysillydreams.product.dtos;
+
+import com.mysillydreams.product.models.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchHitDto {
+    private Product product;
+    private double score;
+}
@@ -0,0 +1,17 @@
+package com.mysillydreams.product.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResultDto {
+    private String query;
+    private int total; // Number of matching products across all pages
+    private int page;
+    private int size;
+    private List<ProductSearchHitDto> hits; // Best match first
+}
@@ -9,5 +9,6 @@ public class ProductUpdateDto {
     private String description;
     private BigDecimal basePrice;
     private Map<String, Object> customAttributes;
+    private Long version; // Optional: the update only applies if the product is still at this version
     // productTypeId and vendorId are typically not updatable directly via this DTO
 }
@@ -0,0 +1,9 @@
+package com.mysillydreams.product.events;
+
+/**
+ * Published after this instance appended to the product change outbox, so open change feeds are
+ * served right away instead of on their next poll. Changes appended by other replicas are picked up
+ * by polling.
+ */
+public class ProductChangesAppendedEvent {
+}
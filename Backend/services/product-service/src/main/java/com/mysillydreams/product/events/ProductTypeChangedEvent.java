@@ -0,0 +1,21 @@
+package com.mysillydreams.product.events;
+
+/**
+ * Published whenever a product type is created, updated or deleted, either by this instance or
+ * (via the change stream listener) by another replica. Listeners drop any state derived from it.
+ */
+public class ProductTypeChangedEvent {
+
+    private final String productTypeId;
+
+    public ProductTypeChangedEvent(String productTypeId) {
+        this.productTypeId = productTypeId;
+    }
+
+    /**
+     * @return the id of the changed product type, or null if every product type must be considered changed
+     */
+    public String getProductTypeId() {
+        return productTypeId;
+    }
+}
@@ -0,0 +1,142 @@
+package com.mysillydreams.product.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Strong entity tags for products and product types. A single document's tag is derived from its
+ * id and version, so it can be computed from a projection without reading the document body.
+ * Collections are tagged with a digest of their members' ids and versions.
+ * <p>
+ * Partial representations (e.g. sparse fieldsets) pass a variant, which is folded into the tag so
+ * each representation of the same state gets its own tag. Preconditions only look at the version,
+ * so a tag obtained from any representation can be used for If-Match.
+ */
+public final class EntityTags {
+
+    private static final String ANY = "*";
+    private static final int LIST_TAG_BYTES = 16;
+    private static final int VARIANT_TAG_BYTES = 8;
+
+    private EntityTags() {
+    }
+
+    public static String of(String id, Long version) {
+        return of(id, version, null);
+    }
+
+    public static String of(String id, Long version, String variant) {
+        String tag = id + "-" + (version == null ? 0L : version);
+        if (variant != null) {
+            tag += "." + HexFormat.of().formatHex(sha256(variant), 0, VARIANT_TAG_BYTES);
+        }
+        return "\"" + tag + "\"";
+    }
+
+    public static <T> String ofAll(Iterable<T> items, Function<T, String> id, Function<T, Long> version) {
+        return ofAll(items, id, version, null);
+    }
+
+    /**
+     * Tag for an ordered collection; changes whenever a member is added, removed, reordered or updated.
+     * Collections get no Last-Modified header, since removing a member does not advance any timestamp.
+     */
+    public static <T> String ofAll(Iterable<T> items, Function<T, String> id, Function<T, Long> version, String variant) {
+        MessageDigest digest = newDigest();
+        if (variant != null) {
+            digest.update(variant.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        for (T item : items) {
+            Long itemVersion = version.apply(item);
+            digest.update(id.apply(item).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(Long.toString(itemVersion == null ? 0L : itemVersion).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return "\"l-" + HexFormat.of().formatHex(digest.digest(), 0, LIST_TAG_BYTES) + "\"";
+    }
+
+    /**
+     * Evaluates an If-Match header against a document's current version using strong comparison
+     * (RFC 9110 13.1.1). A missing header always matches; weak tags never do.
+     */
+    public static boolean ifMatch(String ifMatchHeader, String id, Long currentVersion) {
+        Set<Long> versions = versionsIn(ifMatchHeader, id);
+        return versions == null || versions.contains(currentVersion == null ? 0L : currentVersion);
+    }
+
+    /**
+     * Extracts the versions of document {@code id} named by an If-Match header, so the precondition
+     * can be evaluated by the database as part of the write.
+     *
+     * @return null if the header is absent or is "*" (any current version matches), otherwise the
+     * versions of strong tags for this document; empty if the header names none of them
+     */
+    public static Set<Long> versionsIn(String ifMatchHeader, String id) {
+        if (ifMatchHeader == null || ifMatchHeader.isBlank()) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        Set<Long> versions = new HashSet<>();
+        for (String candidate : ifMatchHeader.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals(ANY)) {
+                return null;
+            }
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                String version = tag.substring(prefix.length(), tag.length() - 1);
+                int variantStart = version.indexOf('.');
+                try {
+                    versions.add(Long.parseLong(variantStart < 0 ? version : version.substring(0, variantStart)));
+                } catch (NumberFormatException e) {
+                    // Not one of our tags; it cannot match
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Combines an If-Match header with a version sent in the request body; a write must satisfy both.
+     *
+     * @return null if the write is unconditional, otherwise the versions it may apply to (possibly none)
+     */
+    public static Set<Long> expectedVersions(String ifMatchHeader, String id, Long bodyVersion) {
+        Set<Long> versions = versionsIn(ifMatchHeader, id);
+        if (bodyVersion == null) {
+            return versions;
+        }
+        if (versions == null) {
+            return Set.of(bodyVersion);
+        }
+        Set<Long> both = new HashSet<>(versions);
+        both.retainAll(Set.of(bodyVersion));
+        return both;
+    }
+
+    /**
+     * @return epoch millis for a Last-Modified header, or -1 (Spring's "unknown") for legacy documents
+     */
+    public static long lastModifiedMillis(Instant lastModified) {
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+
+    private static byte[] sha256(String value) {
+        return newDigest().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
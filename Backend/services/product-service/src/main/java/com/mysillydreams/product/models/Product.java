@@ -0,0 +1,27 @@
+package com.mysillydreams.product.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "products")
+public class Product {
+    @Id
+    private String id;
+    private String name;
+    private String description;
+    private BigDecimal basePrice;
+    private String productTypeId;
+    private String vendorId;
+    private Map<String, Object> customAttributes; // Validated against the ProductType's field definitions
+    private Long version; // Bumped on every write; with the id it forms the ETag. Null on documents written before versioning
+    private Instant lastModified;
+}
@@ -5,6 +5,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
 import java.util.List;
 
 @Data
@@ -17,4 +18,6 @@ public class ProductType {
     private String name;
     private String description;
     private List<FieldDefinition> fieldDefinitions;
+    private Long version; // Bumped on every admin update so derived state (e.g. compiled validators) can detect staleness
+    private Instant lastModified;
 }
@@ -0,0 +1,48 @@
+package com.mysillydreams.product.outbox;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.models.ProductType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One entry of the product change outbox. Sequences are assigned in write order and are what
+ * consumers resume from; a deleted entity has no data.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "product_changes")
+public class ProductChangeEvent {
+
+    public enum EntityType { PRODUCT, PRODUCT_TYPE }
+
+    public enum Operation { CREATED, UPDATED, DELETED }
+
+    @Id
+    private Long sequence;
+    private EntityType entityType;
+    private Operation operation;
+    private String entityId;
+    private Long version; // Version of the entity after the change; null for deletes
+    private Object data; // Product or ProductType as stored after the change; null for deletes
+    private Instant occurredAt; // When the sequence was assigned
+
+    public static ProductChangeEvent of(Operation operation, Product product) {
+        return new ProductChangeEvent(null, EntityType.PRODUCT, operation, product.getId(), product.getVersion(), product, null);
+    }
+
+    public static ProductChangeEvent of(Operation operation, ProductType productType) {
+        return new ProductChangeEvent(null, EntityType.PRODUCT_TYPE, operation, productType.getId(),
+                productType.getVersion(), productType, null);
+    }
+
+    public static ProductChangeEvent deleted(EntityType entityType, String entityId) {
+        return new ProductChangeEvent(null, entityType, Operation.DELETED, entityId, null, null, null);
+    }
+}
@@ -0,0 +1,264 @@
+package com.mysillydreams.product.outbox;
+
+import com.mysillydreams.product.dtos.ProductChangePageDto;
+import com.mysillydreams.product.events.ProductChangesAppendedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves the product change outbox to long-poll and Server-Sent Events consumers.
+ * <p>
+ * Waiting consumers are served by a single dispatcher thread. It runs when this instance appends a
+ * change and otherwise polls for the latest sequence, which picks up changes written by other
+ * replicas; nothing is polled while no one is waiting. Consumers at the same offset share one read
+ * per dispatch, so the cost of a change does not grow with the number of consumers at the head.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ProductChangeFeed implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeFeed.class);
+
+    private final ProductChangeOutbox outbox;
+    private final long pollIntervalMillis;
+    private final long heartbeatMillis;
+    private final int maxSubscribers;
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private ScheduledExecutorService dispatcher;
+
+    public ProductChangeFeed(ProductChangeOutbox outbox,
+                             @Value("${product.changes.poll-interval:PT1S}") Duration pollInterval,
+                             @Value("${product.changes.sse.heartbeat:PT15S}") Duration heartbeat,
+                             @Value("${product.changes.sse.max-subscribers:500}") int maxSubscribers) {
+        this.outbox = outbox;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Answers with the events after the offset, waiting up to the given time for the first one.
+     */
+    public DeferredResult<ResponseEntity<?>> poll(long after, int limit, Duration wait) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(wait.toMillis(),
+                () -> ResponseEntity.ok(new ProductChangePageDto(List.of(), after)));
+        List<ProductChangeEvent> events = outbox.read(after, limit);
+        if (!events.isEmpty() || wait.isZero()) {
+            result.setResult(ResponseEntity.ok(page(after, events)));
+            return result;
+        }
+        Waiter waiter = new Waiter(after, limit, result);
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        return result;
+    }
+
+    /**
+     * Opens an event stream starting after the offset. Each event carries its sequence as the SSE id,
+     * so a reconnecting client resumes through Last-Event-ID.
+     *
+     * @return null if the subscriber limit is reached
+     */
+    public SseEmitter subscribe(long after, int batchSize, Duration timeout) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(after, batchSize, emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        requestDispatch(); // Sends the backlog without waiting for the next poll
+        return emitter;
+    }
+
+    @EventListener
+    public void onChangesAppended(ProductChangesAppendedEvent event) {
+        requestDispatch();
+    }
+
+    @Override
+    public void start() {
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::pollLatest, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return dispatcher != null && !dispatcher.isShutdown();
+    }
+
+    private void requestDispatch() {
+        if (dispatcher != null && dispatchPending.compareAndSet(false, true)) {
+            dispatcher.execute(() -> {
+                dispatchPending.set(false);
+                try {
+                    dispatch(Long.MAX_VALUE);
+                } catch (RuntimeException e) {
+                    log.warn("Product change feed dispatch failed", e);
+                }
+            });
+        }
+    }
+
+    private void pollLatest() {
+        try {
+            if (!waiters.isEmpty() || !subscribers.isEmpty()) {
+                dispatch(outbox.latestSequence());
+            }
+            sendHeartbeats();
+        } catch (RuntimeException e) {
+            // Must not escape, or the scheduled poll stops for good
+            log.warn("Product change feed dispatch failed", e);
+        }
+    }
+
+    // Runs on the dispatcher thread only, so each emitter is written by one thread at a time.
+    private void dispatch(long latest) {
+        Map<Long, Read> readsByOffset = new HashMap<>();
+        boolean behind = false;
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (waiter.after >= latest) {
+                continue;
+            }
+            List<ProductChangeEvent> events = read(readsByOffset, waiter.after, waiter.limit);
+            if (!events.isEmpty()) {
+                it.remove();
+                waiter.result.setResult(ResponseEntity.ok(page(waiter.after, events)));
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.after >= latest) {
+                continue;
+            }
+            List<ProductChangeEvent> events = read(readsByOffset, subscriber.after, subscriber.batchSize);
+            try {
+                for (ProductChangeEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getSequence()))
+                            .name(event.getEntityType() + "_" + event.getOperation())
+                            .data(event, MediaType.APPLICATION_JSON));
+                    subscriber.after = event.getSequence();
+                }
+                if (!events.isEmpty()) {
+                    subscriber.lastSentMillis = System.currentTimeMillis();
+                }
+                behind |= events.size() == subscriber.batchSize;
+            } catch (IOException | IllegalStateException e) {
+                drop(subscriber, e);
+            }
+        }
+        if (behind) {
+            // One batch per subscriber and round, so a consumer replaying a long backlog does not hold up the others
+            requestDispatch();
+        }
+    }
+
+    private List<ProductChangeEvent> read(Map<Long, Read> readsByOffset, long after, int limit) {
+        Read read = readsByOffset.get(after);
+        if (read == null || read.limit < limit) {
+            read = new Read(limit, outbox.read(after, limit));
+            readsByOffset.put(after, read);
+        }
+        return read.events.size() > limit ? read.events.subList(0, limit) : read.events;
+    }
+
+    // Comments keep idle connections open through proxies and reveal clients that went away.
+    private void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (now - subscriber.lastSentMillis < heartbeatMillis) {
+                continue;
+            }
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+                subscriber.lastSentMillis = now;
+            } catch (IOException | IllegalStateException e) {
+                drop(subscriber, e);
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception cause) {
+        log.debug("Dropping product change subscriber at offset {}: {}", subscriber.after, cause.getMessage());
+        subscribers.remove(subscriber);
+        subscriber.emitter.completeWithError(cause);
+    }
+
+    private static ProductChangePageDto page(long after, List<ProductChangeEvent> events) {
+        long next = events.isEmpty() ? after : events.get(events.size() - 1).getSequence();
+        return new ProductChangePageDto(events, next);
+    }
+
+    private static final class Read {
+        private final int limit;
+        private final List<ProductChangeEvent> events;
+
+        private Read(int limit, List<ProductChangeEvent> events) {
+            this.limit = limit;
+            this.events = events;
+        }
+    }
+
+    private static final class Waiter {
+        private final long after;
+        private final int limit;
+        private final DeferredResult<ResponseEntity<?>> result;
+
+        private Waiter(long after, int limit, DeferredResult<ResponseEntity<?>> result) {
+            this.after = after;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+
+    private static final class Subscriber {
+        private long after; // Sequence of the last event sent; dispatcher thread only
+        private final int batchSize;
+        private final SseEmitter emitter;
+        private long lastSentMillis = System.currentTimeMillis();
+
+        private Subscriber(long after, int batchSize, SseEmitter emitter) {
+            this.after = after;
+            this.batchSize = batchSize;
+            this.emitter = emitter;
+        }
+    }
+}
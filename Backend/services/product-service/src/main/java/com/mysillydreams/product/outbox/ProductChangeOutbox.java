@@ -0,0 +1,174 @@
+package com.mysillydreams.product.outbox;
+
+import com.mysillydreams.product.events.ProductChangesAppendedEvent;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Transactional outbox for product and product type changes.
+ * <p>
+ * {@link #write} runs an entity write and appends the change event it produced. When a
+ * {@link MongoTransactionManager} is configured both are committed together; without one the event is
+ * appended right after the write, so a crash in between loses that event. Sequence numbers come from
+ * a counter document that is incremented outside the transaction: a shared counter inside every
+ * transaction would make all concurrent writes conflict with each other. The price is that sequences
+ * can become visible out of order, or not at all if a transaction aborts; {@link #read} accounts for
+ * both.
+ */
+@Component
+public class ProductChangeOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeOutbox.class);
+    private static final String COUNTERS_COLLECTION = "counters";
+    private static final String COUNTER_ID = "product_changes";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate writeTransaction; // Null when transactions are not configured
+    private final TransactionTemplate outsideTransaction;
+    private final Duration retention;
+    private final long gapTimeoutMillis;
+
+    public ProductChangeOutbox(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher,
+                               ObjectProvider<MongoTransactionManager> transactionManager,
+                               @Value("${product.changes.retention:P7D}") Duration retention,
+                               @Value("${product.changes.gap-timeout:PT30S}") Duration gapTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        this.writeTransaction = manager == null ? null : new TransactionTemplate(manager);
+        if (manager == null) {
+            this.outsideTransaction = null;
+        } else {
+            this.outsideTransaction = new TransactionTemplate(manager);
+            this.outsideTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+        }
+        this.retention = retention;
+        this.gapTimeoutMillis = gapTimeout.toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(ProductChangeEvent.class).ensureIndex(new Index()
+                .on("occurredAt", Sort.Direction.ASC)
+                .named("occurredAt_ttl")
+                .expire(retention));
+        log.info("Product changes are kept for {} ({})", retention, writeTransaction == null
+                ? "appended after each write; configure a MongoTransactionManager to make them atomic"
+                : "appended in the write's transaction");
+    }
+
+    /**
+     * Runs a write and appends the event it produced.
+     *
+     * @param eventFor maps the write's result to its change event, or to null if nothing was changed
+     * @return the write's result
+     */
+    public <T> T write(Supplier<T> write, Function<? super T, ProductChangeEvent> eventFor) {
+        T result = writeTransaction == null
+                ? writeAndAppend(write, eventFor)
+                : writeTransaction.execute(status -> writeAndAppend(write, eventFor));
+        eventPublisher.publishEvent(new ProductChangesAppendedEvent());
+        return result;
+    }
+
+    /**
+     * Appends events for writes that were made without a transaction (bulk inserts and the reactive
+     * controllers' writes), with one counter update for the whole list.
+     */
+    public void appendAll(List<ProductChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long first = allocate(events.size());
+        Instant now = Instant.now();
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setSequence(first + i);
+            events.get(i).setOccurredAt(now);
+        }
+        mongoTemplate.insert(events, ProductChangeEvent.class);
+        eventPublisher.publishEvent(new ProductChangesAppendedEvent());
+    }
+
+    /**
+     * Reads the events after the given sequence in order. Reading stops at a missing sequence, since
+     * its write may still be in flight, unless a later event is older than the gap timeout; then the
+     * missing sequence belongs to a write that failed and is skipped.
+     */
+    public List<ProductChangeEvent> read(long after, int limit) {
+        Query query = new Query(Criteria.where("_id").gt(after))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        List<ProductChangeEvent> found = mongoTemplate.find(query, ProductChangeEvent.class);
+        List<ProductChangeEvent> events = new ArrayList<>(found.size());
+        long expected = after + 1;
+        long settledBefore = System.currentTimeMillis() - gapTimeoutMillis;
+        for (ProductChangeEvent event : found) {
+            if (event.getSequence() != expected && event.getOccurredAt().toEpochMilli() > settledBefore) {
+                break;
+            }
+            events.add(event);
+            expected = event.getSequence() + 1;
+        }
+        return events;
+    }
+
+    /**
+     * @return the highest sequence appended so far, or 0 if there are none
+     */
+    public long latestSequence() {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "_id")).limit(1);
+        query.fields().include("_id");
+        ProductChangeEvent latest = mongoTemplate.findOne(query, ProductChangeEvent.class);
+        return latest == null ? 0 : latest.getSequence();
+    }
+
+    private <T> T writeAndAppend(Supplier<T> write, Function<? super T, ProductChangeEvent> eventFor) {
+        T result = write.get();
+        ProductChangeEvent event = eventFor.apply(result);
+        if (event != null) {
+            // Allocated only once the write succeeded, so rejected writes leave no gap behind.
+            Long sequence = outsideTransaction == null
+                    ? allocate(1)
+                    : outsideTransaction.execute(status -> allocate(1));
+            event.setSequence(sequence);
+            event.setOccurredAt(Instant.now());
+            mongoTemplate.insert(event);
+        }
+        return result;
+    }
+
+    // Reserves count consecutive sequences and returns the first one.
+    private long allocate(int count) {
+        Document counter = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(COUNTER_ID)),
+                new Update().inc("sequence", count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class, COUNTERS_COLLECTION);
+        return ((Number) counter.get("sequence")).longValue() - count + 1;
+    }
+}
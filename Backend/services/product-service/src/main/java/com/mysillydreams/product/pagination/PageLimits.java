@@ -0,0 +1,20 @@
+package com.mysillydreams.product.pagination;
+
+/**
+ * Page size bounds shared by every paginated product endpoint.
+ */
+public final class PageLimits {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private PageLimits() {
+    }
+
+    /**
+     * @return the requested page size clamped to [1, MAX_PAGE_SIZE], or the default if none was requested
+     */
+    public static int pageSize(Integer requested) {
+        return requested == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(requested, 1), MAX_PAGE_SIZE);
+    }
+}
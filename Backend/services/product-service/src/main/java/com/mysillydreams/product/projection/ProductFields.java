@@ -0,0 +1,130 @@
+package com.mysillydreams.product.projection;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.search.AttributeIndexManager;
+import org.springframework.data.mongodb.core.query.Field;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A sparse fieldset requested with {@code ?fields=}, e.g. {@code fields=name,basePrice,customAttributes.color}.
+ * It becomes a Mongo projection, so unrequested fields are neither transferred nor materialised, and
+ * renders each product as a map holding only the requested members. The id is always included.
+ */
+public final class ProductFields {
+
+    private static final String CUSTOM_ATTRIBUTES = "customAttributes";
+    private static final String CUSTOM_ATTRIBUTE_PREFIX = CUSTOM_ATTRIBUTES + ".";
+    // In the order members are rendered, matching the full product representation
+    private static final List<String> TOP_LEVEL_FIELDS = List.of("id", "name", "description", "basePrice",
+            "productTypeId", "vendorId", CUSTOM_ATTRIBUTES, "version", "lastModified");
+    private static final int MAX_FIELDS = 50;
+
+    private final Set<String> topLevel;
+    private final Set<String> customAttributes; // Individual attributes; empty when the whole map is requested
+    private final String canonical;
+
+    private ProductFields(Set<String> topLevel, Set<String> customAttributes) {
+        this.topLevel = topLevel;
+        this.customAttributes = customAttributes;
+        List<String> paths = new ArrayList<>(topLevel);
+        customAttributes.forEach(name -> paths.add(CUSTOM_ATTRIBUTE_PREFIX + name));
+        this.canonical = String.join(",", paths);
+    }
+
+    /**
+     * @return the selection, or null if the parameter is absent and full documents should be returned
+     * @throws IllegalArgumentException if a field is unknown or malformed
+     */
+    public static ProductFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        String[] requested = fields.split(",");
+        if (requested.length > MAX_FIELDS) {
+            throw new IllegalArgumentException("At most " + MAX_FIELDS + " fields can be selected.");
+        }
+        Set<String> topLevel = new HashSet<>();
+        Set<String> customAttributes = new TreeSet<>();
+        topLevel.add("id");
+        for (String raw : requested) {
+            String field = raw.trim();
+            if (field.startsWith(CUSTOM_ATTRIBUTE_PREFIX)) {
+                String attribute = field.substring(CUSTOM_ATTRIBUTE_PREFIX.length());
+                if (!AttributeIndexManager.isIndexableFieldName(attribute)) {
+                    throw new IllegalArgumentException("Invalid custom attribute in fields: " + field);
+                }
+                customAttributes.add(attribute);
+            } else if (TOP_LEVEL_FIELDS.contains(field)) {
+                topLevel.add(field);
+            } else {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+        if (topLevel.contains(CUSTOM_ATTRIBUTES)) {
+            customAttributes.clear(); // Mongo rejects a projection of both a path and one of its children
+        }
+        Set<String> orderedTopLevel = new LinkedHashSet<>();
+        TOP_LEVEL_FIELDS.stream().filter(topLevel::contains).forEach(orderedTopLevel::add);
+        return new ProductFields(orderedTopLevel, customAttributes);
+    }
+
+    /**
+     * Restricts a query to the selected fields. The version and modification time are always read so
+     * responses can carry validators; they are only rendered if selected.
+     */
+    public void applyTo(Field projection) {
+        topLevel.forEach(projection::include);
+        customAttributes.forEach(name -> projection.include(CUSTOM_ATTRIBUTE_PREFIX + name));
+        projection.include("version").include("lastModified");
+    }
+
+    public Map<String, Object> render(Product product) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        for (String field : topLevel) {
+            view.put(field, read(product, field));
+        }
+        if (!customAttributes.isEmpty()) {
+            Map<String, Object> stored = product.getCustomAttributes();
+            Map<String, Object> selected = new LinkedHashMap<>();
+            if (stored != null) {
+                for (String name : customAttributes) {
+                    if (stored.containsKey(name)) {
+                        selected.put(name, stored.get(name));
+                    }
+                }
+            }
+            view.put(CUSTOM_ATTRIBUTES, selected);
+        }
+        return view;
+    }
+
+    /**
+     * @return a stable description of the selection, used to give each representation its own ETag
+     */
+    public String variant() {
+        return canonical;
+    }
+
+    private static Object read(Product product, String field) {
+        switch (field) {
+            case "id": return product.getId();
+            case "name": return product.getName();
+            case "description": return product.getDescription();
+            case "basePrice": return product.getBasePrice();
+            case "productTypeId": return product.getProductTypeId();
+            case "vendorId": return product.getVendorId();
+            case CUSTOM_ATTRIBUTES: return product.getCustomAttributes();
+            case "version": return product.getVersion();
+            case "lastModified": return product.getLastModified();
+            default: throw new IllegalStateException("Unhandled field: " + field);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Appends the reactive controllers' writes to the {@link ProductChangeOutbox}, so other replicas and
+ * their search indexes see them the same way as servlet writes. The outbox writes through the
+ * blocking MongoTemplate, so appends run on the bounded elastic scheduler rather than an event loop.
+ * The reactive write has already been made when its event is appended, the same guarantee the outbox
+ * gives writes without a transaction.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChangeOutbox {
+
+    private final ProductChangeOutbox changeOutbox;
+
+    public ReactiveChangeOutbox(ProductChangeOutbox changeOutbox) {
+        this.changeOutbox = changeOutbox;
+    }
+
+    /**
+     * Completes once the event has been appended.
+     */
+    public Mono<Void> append(ProductChangeEvent event) {
+        return Mono.<Void>fromRunnable(() -> changeOutbox.appendAll(List.of(event)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,239 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.dtos.ProductCreateDto;
+import com.mysillydreams.product.dtos.ProductPageDto;
+import com.mysillydreams.product.dtos.ProductUpdateDto;
+import com.mysillydreams.product.http.EntityTags;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.pagination.CursorCodec;
+import com.mysillydreams.product.pagination.PageLimits;
+import com.mysillydreams.product.search.ProductSearchIndex;
+import com.mysillydreams.product.security.ProductAuthorities;
+import com.mysillydreams.product.validation.AttributeValidatorCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Reactive deployment mode of the product API, active when product-service runs with
+ * spring.main.web-application-type=reactive. Same routes, payloads and authorization rules as
+ * {@link com.mysillydreams.product.controllers.ProductController}, but no request holds a thread
+ * while Mongo is working. Bulk import, attribute filtering and text search are servlet-only for now.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1/products")
+public class ReactiveProductController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveProductController.class);
+
+    private final ReactiveProductRepository productRepository;
+    private final ReactiveProductTypeRepository productTypeRepository;
+    private final AttributeValidatorCache attributeValidators;
+    private final ProductSearchIndex searchIndex;
+    private final ReactiveChangeOutbox changeOutbox;
+
+    public ReactiveProductController(ReactiveProductRepository productRepository,
+                                     ReactiveProductTypeRepository productTypeRepository,
+                                     AttributeValidatorCache attributeValidators,
+                                     ProductSearchIndex searchIndex,
+                                     ReactiveChangeOutbox changeOutbox) {
+        this.productRepository = productRepository;
+        this.productTypeRepository = productTypeRepository;
+        this.attributeValidators = attributeValidators;
+        this.searchIndex = searchIndex;
+        this.changeOutbox = changeOutbox;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasAnyAuthority('ROLE_admin', 'ROLE_vendor')")
+    public Mono<ResponseEntity<?>> createProduct(@RequestBody ProductCreateDto productCreateDto, Authentication authentication) {
+        log.info("Request to create product: {}", productCreateDto.getName());
+        if (productCreateDto.getProductTypeId() == null) {
+            return Mono.just(ResponseEntity.badRequest().body("ProductType ID is required."));
+        }
+        Function<String, String> vendorIdResolver = ProductAuthorities.vendorIdResolver(authentication);
+        if (vendorIdResolver == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).body("User role not permitted to set vendor ID or create product without it."));
+        }
+
+        return productTypeRepository.findById(productCreateDto.getProductTypeId())
+                .flatMap(productType -> {
+                    String validationError = attributeValidators.forType(productType).validate(productCreateDto.getCustomAttributes());
+                    if (validationError != null) {
+                        return Mono.<ResponseEntity<?>>just(ResponseEntity.badRequest().body("Validation error in custom attributes: " + validationError));
+                    }
+                    Product product = new Product();
+                    product.setName(productCreateDto.getName());
+                    product.setDescription(productCreateDto.getDescription());
+                    product.setBasePrice(productCreateDto.getBasePrice());
+                    product.setProductTypeId(productCreateDto.getProductTypeId());
+                    product.setCustomAttributes(productCreateDto.getCustomAttributes());
+                    product.setVendorId(vendorIdResolver.apply(productCreateDto.getVendorId()));
+                    product.setVersion(0L);
+                    product.setLastModified(Instant.now());
+                    return productRepository.save(product)
+                            .flatMap(saved -> changeOutbox.append(ProductChangeEvent.of(ProductChangeEvent.Operation.CREATED, saved))
+                                    .thenReturn(saved))
+                            .doOnNext(searchIndex::index)
+                            .doOnNext(saved -> log.info("Product created successfully with ID: {}", saved.getId()))
+                            .<ResponseEntity<?>>map(saved -> new ResponseEntity<>(saved, HttpStatus.CREATED));
+                })
+                .defaultIfEmpty(ResponseEntity.badRequest().body("Invalid ProductType ID: " + productCreateDto.getProductTypeId()));
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("@reactiveProductSecurity.canModify(authentication, #id)")
+    public Mono<ResponseEntity<?>> updateProduct(@PathVariable String id, @RequestBody ProductUpdateDto productUpdateDto,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Request to update product with ID: {}", id);
+        Set<Long> expectedVersions = EntityTags.expectedVersions(ifMatch, id, productUpdateDto.getVersion());
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return Mono.just(preconditionFailed());
+        }
+        // The read supplies the product type for validation; the write itself is conditional on the version.
+        return productRepository.findById(id)
+                .flatMap(existingProduct -> productTypeRepository.findById(existingProduct.getProductTypeId())
+                        .flatMap(productType -> {
+                            Update update = new Update();
+                            if (productUpdateDto.getCustomAttributes() != null) {
+                                String validationError = attributeValidators.forType(productType).validate(productUpdateDto.getCustomAttributes());
+                                if (validationError != null) {
+                                    return Mono.<ResponseEntity<?>>just(ResponseEntity.badRequest().body("Validation error in custom attributes: " + validationError));
+                                }
+                                update.set("customAttributes", productUpdateDto.getCustomAttributes());
+                            }
+                            if (productUpdateDto.getName() != null) update.set("name", productUpdateDto.getName());
+                            if (productUpdateDto.getDescription() != null) update.set("description", productUpdateDto.getDescription());
+                            if (productUpdateDto.getBasePrice() != null) update.set("basePrice", productUpdateDto.getBasePrice());
+                            update.inc("version", 1).set("lastModified", Instant.now());
+                            return productRepository.updateIfVersion(id, expectedVersions, update)
+                                    .flatMap(updated -> changeOutbox.append(ProductChangeEvent.of(ProductChangeEvent.Operation.UPDATED, updated))
+                                            .thenReturn(updated))
+                                    .doOnNext(searchIndex::index)
+                                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                                    .switchIfEmpty(Mono.defer(() -> writeMissed(id, expectedVersions)));
+                        })
+                        .defaultIfEmpty(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Product's type definition not found. This indicates a data inconsistency.")))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping
+    @PreAuthorize("permitAll()") // As per ReactiveSecurityConfig
+    public Mono<ResponseEntity<?>> getAllProducts(@RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer limit) {
+        log.info("Request to list products after cursor: {}", cursor);
+        int pageSize = PageLimits.pageSize(limit);
+        Pageable pageable = PageRequest.ofSize(pageSize + 1); // One extra to detect a following page
+
+        Flux<Product> products;
+        if (cursor == null || cursor.isEmpty()) {
+            products = productRepository.findAllByOrderByIdAsc(pageable);
+        } else {
+            String lastId;
+            try {
+                lastId = CursorCodec.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Mono.just(ResponseEntity.badRequest().body("Invalid cursor."));
+            }
+            products = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, pageable);
+        }
+        return products.collectList().map(page -> {
+            List<Product> items = page;
+            String nextCursor = null;
+            if (items.size() > pageSize) {
+                items = items.subList(0, pageSize);
+                nextCursor = CursorCodec.encode(items.get(pageSize - 1).getId());
+            }
+            return ResponseEntity.ok()
+                    .eTag(EntityTags.ofAll(items, Product::getId, Product::getVersion))
+                    .body(new ProductPageDto(items, nextCursor));
+        });
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("permitAll()") // As per ReactiveSecurityConfig
+    public Flux<Product> streamAllProducts() {
+        log.info("Request to stream all products as NDJSON");
+        // Backpressure from the response limits how far ahead the Mongo cursor is read.
+        return productRepository.findAllByOrderByIdAsc();
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("permitAll()") // As per ReactiveSecurityConfig
+    public Mono<ResponseEntity<Product>> getProductById(@PathVariable String id) {
+        log.info("Request to get product by ID: {}", id);
+        // WebFlux answers a matching If-None-Match / If-Modified-Since with 304 before writing the body.
+        return productRepository.findById(id)
+                .map(product -> {
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(EntityTags.of(product.getId(), product.getVersion()));
+                    if (product.getLastModified() != null) {
+                        builder.lastModified(product.getLastModified());
+                    }
+                    return builder.body(product);
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/vendor/{vendorId}")
+    @PreAuthorize("isAuthenticated()")
+    public Mono<ResponseEntity<List<Product>>> getProductsByVendorId(@PathVariable String vendorId) {
+        log.info("Request to list products for vendor ID: {}", vendorId);
+        return productRepository.findByVendorId(vendorId).collectList()
+                .map(products -> ResponseEntity.ok()
+                        .eTag(EntityTags.ofAll(products, Product::getId, Product::getVersion))
+                        .body(products));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("@reactiveProductSecurity.canModify(authentication, #id)")
+    public Mono<ResponseEntity<?>> deleteProduct(@PathVariable String id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Request to delete product with ID: {}", id);
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return Mono.just(preconditionFailed());
+        }
+        return productRepository.deleteIfVersion(id, expectedVersions)
+                .flatMap(deleted -> {
+                    if (!deleted) {
+                        return writeMissed(id, expectedVersions);
+                    }
+                    searchIndex.remove(id);
+                    log.info("Product with ID: {} deleted successfully", id);
+                    return changeOutbox.append(ProductChangeEvent.deleted(ProductChangeEvent.EntityType.PRODUCT, id))
+                            .thenReturn(ResponseEntity.noContent().build());
+                });
+    }
+
+    /**
+     * Tells a missing product from a version mismatch after a conditional write matched nothing; only
+     * a conditional write needs the extra read.
+     */
+    private Mono<ResponseEntity<?>> writeMissed(String id, Set<Long> expectedVersions) {
+        Mono<Boolean> exists = expectedVersions == null ? Mono.just(false) : productRepository.existsById(id);
+        return exists.map(found -> found ? preconditionFailed() : ResponseEntity.notFound().build());
+    }
+
+    private static ResponseEntity<?> preconditionFailed() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("Product has been modified since it was read.");
+    }
+}
@@ -0,0 +1,20 @@
+package com.mysillydreams.product.reactive;
+import com.mysillydreams.product.models.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, String>, ReactiveProductRepositoryCustom {
+    Flux<Product> findByVendorId(String vendorId);
+
+    // Keyset pagination over _id, mirroring ProductRepository.
+    Flux<Product> findAllByOrderByIdAsc(Pageable pageable);
+    Flux<Product> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    Flux<Product> findAllByOrderByIdAsc();
+
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'vendorId': 1, 'productTypeId': 1, 'version': 1, 'lastModified': 1 }")
+    Mono<Product> findHeaderById(String id);
+}
@@ -0,0 +1,16 @@
+package com.mysillydreams.product.reactive;
+import com.mysillydreams.product.models.Product;
+import java.util.Set;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+/**
+ * Conditional writes, mirroring ProductRepositoryCustom.
+ */
+public interface ReactiveProductRepositoryCustom {
+    // expectedVersions: null for an unconditional write, otherwise the versions the document may be at.
+    // Emits the updated document, or nothing if no document matched.
+    Mono<Product> updateIfVersion(String id, Set<Long> expectedVersions, Update update);
+    // Emits false if no document matched.
+    Mono<Boolean> deleteIfVersion(String id, Set<Long> expectedVersions);
+}
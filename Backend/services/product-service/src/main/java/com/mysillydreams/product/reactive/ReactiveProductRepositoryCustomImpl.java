@@ -0,0 +1,31 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.repositories.VersionedQueries;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+class ReactiveProductRepositoryCustomImpl implements ReactiveProductRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    ReactiveProductRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Product> updateIfVersion(String id, Set<Long> expectedVersions, Update update) {
+        return mongoTemplate.findAndModify(VersionedQueries.byIdAndVersion(id, expectedVersions), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public Mono<Boolean> deleteIfVersion(String id, Set<Long> expectedVersions) {
+        return mongoTemplate.remove(VersionedQueries.byIdAndVersion(id, expectedVersions), Product.class)
+                .map(result -> result.getDeletedCount() > 0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.security.ProductAuthorities;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of the servlet ownership check. Reactive method security can only await a
+ * Mono that is the whole @PreAuthorize expression, so the admin-or-owning-vendor rule is evaluated here.
+ */
+@Component("reactiveProductSecurity")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveProductSecurity {
+
+    private final ReactiveProductRepository productRepository;
+
+    public ReactiveProductSecurity(ReactiveProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Same rule as {@code hasAuthority('ROLE_admin') or (hasAuthority('ROLE_vendor') and @productSecurity.isOwner(authentication, #id))}.
+     */
+    public Mono<Boolean> canModify(Authentication authentication, String productId) {
+        if (ProductAuthorities.hasAuthority(authentication, ProductAuthorities.ROLE_ADMIN)) {
+            return Mono.just(true);
+        }
+        if (!ProductAuthorities.hasAuthority(authentication, ProductAuthorities.ROLE_VENDOR)
+                || !(authentication.getPrincipal() instanceof Jwt jwt)) {
+            return Mono.just(false);
+        }
+        // A missing product is left to the handler, which answers 404 as the servlet controller does.
+        return productRepository.findHeaderById(productId)
+                .map(product -> jwt.getSubject().equals(product.getVendorId()))
+                .defaultIfEmpty(true);
+    }
+}
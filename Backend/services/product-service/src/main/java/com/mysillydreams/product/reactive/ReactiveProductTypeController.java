@@ -0,0 +1,159 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.http.EntityTags;
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reactive deployment mode of the product type API; see {@link ReactiveProductController}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1/product-types")
+public class ReactiveProductTypeController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveProductTypeController.class);
+    private final ReactiveProductTypeRepository productTypeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReactiveChangeOutbox changeOutbox;
+
+    public ReactiveProductTypeController(ReactiveProductTypeRepository productTypeRepository, ApplicationEventPublisher eventPublisher,
+                                         ReactiveChangeOutbox changeOutbox) {
+        this.productTypeRepository = productTypeRepository;
+        this.eventPublisher = eventPublisher;
+        this.changeOutbox = changeOutbox;
+    }
+
+    @PostMapping("/admin")
+    @PreAuthorize("hasAuthority('ROLE_admin')")
+    public Mono<ResponseEntity<ProductType>> createProductType(@RequestBody ProductType productType) {
+        log.info("Admin request to create product type: {}", productType.getName());
+        if (productType.getName() == null || productType.getName().trim().isEmpty()) {
+            log.warn("Product type name cannot be empty");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return productTypeRepository.findByName(productType.getName())
+                .map(existing -> {
+                    log.warn("Product type with name '{}' already exists", productType.getName());
+                    return ResponseEntity.status(HttpStatus.CONFLICT).<ProductType>build();
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    productType.setVersion(0L);
+                    productType.setLastModified(Instant.now());
+                    return productTypeRepository.save(productType)
+                            .flatMap(saved -> changeOutbox.append(ProductChangeEvent.of(ProductChangeEvent.Operation.CREATED, saved))
+                                    .thenReturn(saved))
+                            .doOnNext(saved -> eventPublisher.publishEvent(new ProductTypeChangedEvent(saved.getId())))
+                            .map(saved -> new ResponseEntity<>(saved, HttpStatus.CREATED));
+                }));
+    }
+
+    @GetMapping
+    @PreAuthorize("permitAll()")
+    public Mono<ResponseEntity<List<ProductType>>> getAllProductTypes() {
+        log.info("Request to list all product types");
+        return productTypeRepository.findAll().collectList()
+                .map(productTypes -> ResponseEntity.ok()
+                        .eTag(EntityTags.ofAll(productTypes, ProductType::getId, ProductType::getVersion))
+                        .body(productTypes));
+    }
+
+    @GetMapping("/admin/{id}")
+    @PreAuthorize("hasAuthority('ROLE_admin')")
+    public Mono<ResponseEntity<ProductType>> getProductTypeById(@PathVariable String id) {
+        log.info("Admin request to get product type by ID: {}", id);
+        return productTypeRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/admin/{id}")
+    @PreAuthorize("hasAuthority('ROLE_admin')")
+    public Mono<ResponseEntity<ProductType>> updateProductType(@PathVariable String id, @RequestBody ProductType productTypeDetails,
+                                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Admin request to update product type with ID: {}", id);
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            log.warn("Product type with ID: {} was modified since the client read it", id);
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        Mono<Boolean> nameConflict = Mono.just(false);
+        if (productTypeDetails.getName() != null) {
+            nameConflict = productTypeRepository.findByName(productTypeDetails.getName())
+                    .map(conflicting -> !conflicting.getId().equals(id))
+                    .defaultIfEmpty(false);
+        }
+        return nameConflict.flatMap(conflict -> {
+            if (conflict) {
+                log.warn("Product type name '{}' conflicts with an existing type during update", productTypeDetails.getName());
+                return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<ProductType>build());
+            }
+            Update update = new Update().set("description", productTypeDetails.getDescription());
+            if (productTypeDetails.getName() != null) {
+                update.set("name", productTypeDetails.getName());
+            }
+            if (productTypeDetails.getFieldDefinitions() != null) {
+                update.set("fieldDefinitions", productTypeDetails.getFieldDefinitions());
+            }
+            update.inc("version", 1).set("lastModified", Instant.now());
+            // The version check is part of the write, so two writers holding the same tag cannot both succeed.
+            return productTypeRepository.updateIfVersion(id, expectedVersions, update)
+                    .flatMap(updated -> changeOutbox.append(ProductChangeEvent.of(ProductChangeEvent.Operation.UPDATED, updated))
+                            .thenReturn(updated))
+                    .doOnNext(updated -> eventPublisher.publishEvent(new ProductTypeChangedEvent(id)))
+                    .map(ResponseEntity::ok)
+                    .switchIfEmpty(Mono.defer(() -> writeMissed(id, expectedVersions, "update")));
+        });
+    }
+
+    @DeleteMapping("/admin/{id}")
+    @PreAuthorize("hasAuthority('ROLE_admin')")
+    public Mono<ResponseEntity<Void>> deleteProductType(@PathVariable String id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Admin request to delete product type with ID: {}", id);
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            log.warn("Product type with ID: {} was modified since the client read it", id);
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return productTypeRepository.deleteIfVersion(id, expectedVersions)
+                .flatMap(deleted -> {
+                    if (!deleted) {
+                        return writeMissed(id, expectedVersions, "deletion");
+                    }
+                    eventPublisher.publishEvent(new ProductTypeChangedEvent(id));
+                    log.info("Product type with ID: {} deleted successfully", id);
+                    return changeOutbox.append(ProductChangeEvent.deleted(ProductChangeEvent.EntityType.PRODUCT_TYPE, id))
+                            .thenReturn(ResponseEntity.noContent().<Void>build());
+                });
+    }
+
+    // Only a failed conditional write needs the extra read to tell 412 from 404.
+    private <T> Mono<ResponseEntity<T>> writeMissed(String id, Set<Long> expectedVersions, String operation) {
+        Mono<Boolean> exists = expectedVersions == null ? Mono.just(false) : productTypeRepository.existsById(id);
+        return exists.map(found -> {
+            if (found) {
+                log.warn("Product type with ID: {} was modified since the client read it", id);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).<T>build();
+            }
+            log.warn("Product type with ID: {} not found for {}", id, operation);
+            return ResponseEntity.notFound().<T>build();
+        });
+    }
+}
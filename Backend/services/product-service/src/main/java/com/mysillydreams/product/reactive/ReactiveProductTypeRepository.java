@@ -0,0 +1,8 @@
+package com.mysillydreams.product.reactive;
+import com.mysillydreams.product.models.ProductType;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductTypeRepository extends ReactiveMongoRepository<ProductType, String>, ReactiveProductTypeRepositoryCustom {
+    Mono<ProductType> findByName(String name);
+}
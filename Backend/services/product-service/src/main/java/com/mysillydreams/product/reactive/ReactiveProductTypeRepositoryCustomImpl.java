@@ -0,0 +1,31 @@
+package com.mysillydreams.product.reactive;
+
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.repositories.VersionedQueries;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+class ReactiveProductTypeRepositoryCustomImpl implements ReactiveProductTypeRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    ReactiveProductTypeRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<ProductType> updateIfVersion(String id, Set<Long> expectedVersions, Update update) {
+        return mongoTemplate.findAndModify(VersionedQueries.byIdAndVersion(id, expectedVersions), update,
+                FindAndModifyOptions.options().returnNew(true), ProductType.class);
+    }
+
+    @Override
+    public Mono<Boolean> deleteIfVersion(String id, Set<Long> expectedVersions) {
+        return mongoTemplate.remove(VersionedQueries.byIdAndVersion(id, expectedVersions), ProductType.class)
+                .map(result -> result.getDeletedCount() > 0);
+    }
+}
@@ -0,0 +1,23 @@
+package com.mysillydreams.product.repositories;
+import com.mysillydreams.product.models.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
+    List<Product> findByVendorId(String vendorId);
+
+    // Keyset pagination over _id: the first page, then everything after the last id already returned.
+    List<Product> findAllByOrderByIdAsc(Pageable pageable);
+    List<Product> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    // Backed by a server-side Mongo cursor; callers must close the stream.
+    Stream<Product> streamAllByOrderByIdAsc();
+
+    // Only the fields needed for conditional requests and ownership checks; the rest of the document is not read.
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'vendorId': 1, 'productTypeId': 1, 'version': 1, 'lastModified': 1 }")
+    Optional<Product> findHeaderById(String id);
+}
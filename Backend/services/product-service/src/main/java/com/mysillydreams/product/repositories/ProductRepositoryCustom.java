@@ -0,0 +1,23 @@
+package com.mysillydreams.product.repositories;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.projection.ProductFields;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Sparse-fieldset reads (fields outside the selection are left null) and conditional writes.
+ */
+public interface ProductRepositoryCustom {
+    // Same keyset pagination as findByIdGreaterThanOrderByIdAsc; afterId is null for the first page.
+    List<Product> findPage(String afterId, int limit, ProductFields fields);
+    List<Product> findByVendorId(String vendorId, ProductFields fields);
+    Optional<Product> findById(String id, ProductFields fields);
+
+    // expectedVersions: null for an unconditional write, otherwise the versions the document may be at.
+    // Returns the updated document, or null if no document matched.
+    Product updateIfVersion(String id, Set<Long> expectedVersions, Update update);
+    // Returns false if no document matched.
+    boolean deleteIfVersion(String id, Set<Long> expectedVersions);
+}
@@ -0,0 +1,58 @@
+package com.mysillydreams.product.repositories;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.projection.ProductFields;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    ProductRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Product> findPage(String afterId, int limit, ProductFields fields) {
+        Query query = afterId == null ? new Query() : new Query(Criteria.where("id").gt(afterId));
+        query.with(Sort.by(Sort.Direction.ASC, "id")).limit(limit);
+        return find(query, fields);
+    }
+
+    @Override
+    public List<Product> findByVendorId(String vendorId, ProductFields fields) {
+        return find(new Query(Criteria.where("vendorId").is(vendorId)), fields);
+    }
+
+    @Override
+    public Optional<Product> findById(String id, ProductFields fields) {
+        Query query = new Query(Criteria.where("id").is(id));
+        fields.applyTo(query.fields());
+        return Optional.ofNullable(mongoTemplate.findOne(query, Product.class));
+    }
+
+    @Override
+    public Product updateIfVersion(String id, Set<Long> expectedVersions, Update update) {
+        return mongoTemplate.findAndModify(VersionedQueries.byIdAndVersion(id, expectedVersions), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+    }
+
+    @Override
+    public boolean deleteIfVersion(String id, Set<Long> expectedVersions) {
+        return mongoTemplate.remove(VersionedQueries.byIdAndVersion(id, expectedVersions), Product.class).getDeletedCount() > 0;
+    }
+
+    private List<Product> find(Query query, ProductFields fields) {
+        fields.applyTo(query.fields());
+        return mongoTemplate.find(query, Product.class);
+    }
+}
@@ -3,6 +3,6 @@ import com.mysillydreams.product.models.ProductType;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.Optional;
 
-public interface ProductTypeRepository extends MongoRepository<ProductType, String> {
+public interface ProductTypeRepository extends MongoRepository<ProductType, String>, ProductTypeRepositoryCustom {
     Optional<ProductType> findByName(String name);
 }
@@ -0,0 +1,15 @@
+package com.mysillydreams.product.repositories;
+import com.mysillydreams.product.models.ProductType;
+import java.util.Set;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Conditional writes, mirroring ProductRepositoryCustom.
+ */
+public interface ProductTypeRepositoryCustom {
+    // expectedVersions: null for an unconditional write, otherwise the versions the document may be at.
+    // Returns the updated document, or null if no document matched.
+    ProductType updateIfVersion(String id, Set<Long> expectedVersions, Update update);
+    // Returns false if no document matched.
+    boolean deleteIfVersion(String id, Set<Long> expectedVersions);
+}
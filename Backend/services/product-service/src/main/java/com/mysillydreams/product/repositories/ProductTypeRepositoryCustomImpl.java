@@ -0,0 +1,28 @@
+package com.mysillydreams.product.repositories;
+
+import com.mysillydreams.product.models.ProductType;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Set;
+
+class ProductTypeRepositoryCustomImpl implements ProductTypeRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    ProductTypeRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public ProductType updateIfVersion(String id, Set<Long> expectedVersions, Update update) {
+        return mongoTemplate.findAndModify(VersionedQueries.byIdAndVersion(id, expectedVersions), update,
+                FindAndModifyOptions.options().returnNew(true), ProductType.class);
+    }
+
+    @Override
+    public boolean deleteIfVersion(String id, Set<Long> expectedVersions) {
+        return mongoTemplate.remove(VersionedQueries.byIdAndVersion(id, expectedVersions), ProductType.class).getDeletedCount() > 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.mysillydreams.product.repositories;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters for conditional writes, shared by the blocking and reactive repositories. The version check
+ * is part of the write's filter, so check and write are a single atomic operation.
+ */
+public final class VersionedQueries {
+
+    private VersionedQueries() {
+    }
+
+    /**
+     * @param expectedVersions null for an unconditional write, otherwise the versions the document may be at
+     */
+    public static Query byIdAndVersion(String id, Set<Long> expectedVersions) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (expectedVersions != null) {
+            List<Object> versions = new ArrayList<>(expectedVersions);
+            if (expectedVersions.contains(0L)) {
+                versions.add(null); // Documents written before versioning carry no version and are tagged as 0
+            }
+            criteria = criteria.and("version").in(versions);
+        }
+        return new Query(criteria);
+    }
+}
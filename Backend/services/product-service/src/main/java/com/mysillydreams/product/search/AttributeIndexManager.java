@@ -0,0 +1,106 @@
+package com.mysillydreams.product.search;
+
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.models.CustomFieldType;
+import com.mysillydreams.product.models.FieldDefinition;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.models.ProductType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Derives Mongo indexes for attribute filtering from the product types' field definitions. Every
+ * filterable field gets a compound {productTypeId, customAttributes.&lt;field&gt;} index, shared by all
+ * types declaring a field of that name. Indexes are ensured on startup and whenever a product type
+ * changes, on a background thread because building an index on a large collection takes a while.
+ */
+@Component
+public class AttributeIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AttributeIndexManager.class);
+    static final Set<CustomFieldType> FILTERABLE_TYPES = EnumSet.of(
+            CustomFieldType.SELECT, CustomFieldType.MULTI_SELECT, CustomFieldType.CHECKBOX,
+            CustomFieldType.BOOLEAN, CustomFieldType.NUMBER, CustomFieldType.DATE);
+    private static final String INDEX_PREFIX = "attr_";
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductTypeCache productTypeCache;
+    private final AsyncTaskExecutor taskExecutor;
+    private final int maxIndexes;
+    private final Set<String> ensuredFields = ConcurrentHashMap.newKeySet();
+
+    public AttributeIndexManager(MongoTemplate mongoTemplate, ProductTypeCache productTypeCache,
+                                 @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+                                 @Value("${product.search.attribute-indexes.max:40}") int maxIndexes) {
+        this.mongoTemplate = mongoTemplate;
+        this.productTypeCache = productTypeCache;
+        this.taskExecutor = taskExecutor;
+        this.maxIndexes = maxIndexes; // Mongo allows 64 indexes per collection; leave room for the others
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureAllIndexes() {
+        taskExecutor.execute(() -> productTypeCache.findAll().forEach(this::ensureIndexes));
+    }
+
+    @EventListener
+    public void onProductTypeChanged(ProductTypeChangedEvent event) {
+        if (event.getProductTypeId() == null) {
+            ensureAllIndexes();
+            return;
+        }
+        taskExecutor.execute(() -> productTypeCache.findById(event.getProductTypeId()).ifPresent(this::ensureIndexes));
+    }
+
+    /**
+     * Field names become parts of Mongo paths, so names that would address a different path are never used.
+     */
+    public static boolean isIndexableFieldName(String fieldName) {
+        return fieldName != null && !fieldName.isEmpty() && fieldName.indexOf('.') < 0 && !fieldName.startsWith("$");
+    }
+
+    private void ensureIndexes(ProductType productType) {
+        List<FieldDefinition> definitions = productType.getFieldDefinitions();
+        if (definitions == null) {
+            return;
+        }
+        for (FieldDefinition definition : definitions) {
+            String fieldName = definition.getFieldName();
+            if (!isIndexableFieldName(fieldName) || !FILTERABLE_TYPES.contains(definition.getFieldType())
+                    || ensuredFields.contains(fieldName)) {
+                continue;
+            }
+            if (ensuredFields.size() >= maxIndexes) {
+                log.warn("Attribute index limit of {} reached; field '{}' of product type {} will be filtered without an index",
+                        maxIndexes, fieldName, productType.getId());
+                return;
+            }
+            try {
+                mongoTemplate.indexOps(Product.class).ensureIndex(new Index()
+                        .on("productTypeId", Sort.Direction.ASC)
+                        .on("customAttributes." + fieldName, Sort.Direction.ASC)
+                        .named(INDEX_PREFIX + fieldName)
+                        .background());
+                ensuredFields.add(fieldName);
+                log.info("Ensured attribute index for field '{}'", fieldName);
+            } catch (RuntimeException e) {
+                log.error("Could not create attribute index for field '{}'", fieldName, e);
+            }
+        }
+    }
+}
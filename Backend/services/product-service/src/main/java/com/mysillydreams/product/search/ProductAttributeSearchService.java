@@ -0,0 +1,193 @@
+package com.mysillydreams.product.search;
+
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.dtos.FacetCountDto;
+import com.mysillydreams.product.dtos.ProductFacetSearchDto;
+import com.mysillydreams.product.models.CustomFieldType;
+import com.mysillydreams.product.models.FieldDefinition;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.pagination.CursorCodec;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters products of one product type by custom attribute values and returns facet counts in the
+ * same Mongo round-trip. The match stage only touches productTypeId and indexed customAttributes
+ * paths (see {@link AttributeIndexManager}); pages are keyset-paginated over _id.
+ *
+ * <p>Filter syntax, one request parameter per field: {@code value} or {@code v1,v2} match any of the
+ * values; for NUMBER and DATE fields {@code min..max} (either side may be left out) matches a range.
+ */
+@Service
+public class ProductAttributeSearchService {
+
+    private static final String RANGE_SEPARATOR = "..";
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductTypeCache productTypeCache;
+    private final int maxFacetBuckets;
+
+    public ProductAttributeSearchService(MongoTemplate mongoTemplate, ProductTypeCache productTypeCache,
+                                         @Value("${product.search.facets.max-buckets:50}") int maxFacetBuckets) {
+        this.mongoTemplate = mongoTemplate;
+        this.productTypeCache = productTypeCache;
+        this.maxFacetBuckets = maxFacetBuckets;
+    }
+
+    /**
+     * @param filters   raw filter values keyed by custom attribute field name
+     * @param facetFields fields to return value counts for
+     * @throws IllegalArgumentException if the product type, a field, a filter value or the cursor is invalid
+     */
+    public ProductFacetSearchDto search(String productTypeId, Map<String, String> filters, Collection<String> facetFields,
+                                        String cursor, int limit) {
+        ProductType productType = productTypeCache.findById(productTypeId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid ProductType ID: " + productTypeId));
+        Map<String, FieldDefinition> definitions = new LinkedHashMap<>();
+        if (productType.getFieldDefinitions() != null) {
+            for (FieldDefinition definition : productType.getFieldDefinitions()) {
+                definitions.put(definition.getFieldName(), definition);
+            }
+        }
+
+        Criteria match = Criteria.where("productTypeId").is(productTypeId);
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            FieldDefinition definition = requireFilterable(definitions, filter.getKey());
+            applyFilter(match.and("customAttributes." + filter.getKey()), definition, filter.getValue());
+        }
+
+        List<AggregationOperation> itemsPipeline = new ArrayList<>(3);
+        if (cursor != null && !cursor.isEmpty()) {
+            String lastId = CursorCodec.decode(cursor);
+            itemsPipeline.add(Aggregation.match(Criteria.where("_id").gt(ObjectId.isValid(lastId) ? new ObjectId(lastId) : lastId)));
+        }
+        itemsPipeline.add(Aggregation.sort(Sort.Direction.ASC, "_id"));
+        itemsPipeline.add(Aggregation.limit(limit + 1L)); // One extra to detect a following page
+
+        FacetOperation.FacetOperationBuilder builder = Aggregation.facet(itemsPipeline.toArray(new AggregationOperation[0]));
+        FacetOperation facet = builder.as("items");
+        List<String> facetNames = new ArrayList<>();
+        for (String fieldName : facetFields) {
+            FieldDefinition definition = requireFilterable(definitions, fieldName);
+            String path = "customAttributes." + fieldName;
+            List<AggregationOperation> facetPipeline = new ArrayList<>(3);
+            if (isMultiValued(definition)) {
+                facetPipeline.add(Aggregation.unwind(path));
+            }
+            facetPipeline.add(Aggregation.sortByCount(path));
+            facetPipeline.add(Aggregation.limit(maxFacetBuckets));
+            // Output field names may not contain dots, so facets are emitted under positional aliases.
+            facet = facet.and(facetPipeline.toArray(new AggregationOperation[0])).as("f" + facetNames.size());
+            facetNames.add(fieldName);
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(Aggregation.match(match), facet);
+        Document result = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Product.class), Document.class)
+                .getUniqueMappedResult();
+
+        List<Product> items = new ArrayList<>(limit);
+        Map<String, List<FacetCountDto>> facets = new LinkedHashMap<>();
+        String nextCursor = null;
+        if (result != null) {
+            for (Document item : result.getList("items", Document.class)) {
+                items.add(mongoTemplate.getConverter().read(Product.class, item));
+            }
+            if (items.size() > limit) {
+                items = items.subList(0, limit);
+                nextCursor = CursorCodec.encode(items.get(limit - 1).getId());
+            }
+            for (int i = 0; i < facetNames.size(); i++) {
+                List<FacetCountDto> counts = new ArrayList<>();
+                for (Document bucket : result.getList("f" + i, Document.class)) {
+                    counts.add(new FacetCountDto(bucket.get("_id"), ((Number) bucket.get("count")).longValue()));
+                }
+                facets.put(facetNames.get(i), counts);
+            }
+        }
+        return new ProductFacetSearchDto(items, nextCursor, facets);
+    }
+
+    private static FieldDefinition requireFilterable(Map<String, FieldDefinition> definitions, String fieldName) {
+        FieldDefinition definition = definitions.get(fieldName);
+        if (definition == null || !AttributeIndexManager.isIndexableFieldName(fieldName)
+                || !AttributeIndexManager.FILTERABLE_TYPES.contains(definition.getFieldType())) {
+            throw new IllegalArgumentException("Field '" + fieldName + "' cannot be filtered or faceted for this product type.");
+        }
+        return definition;
+    }
+
+    private static boolean isMultiValued(FieldDefinition definition) {
+        return definition.getFieldType() == CustomFieldType.MULTI_SELECT
+                || (definition.getFieldType() == CustomFieldType.CHECKBOX && definition.getOptions() != null
+                    && !definition.getOptions().isEmpty());
+    }
+
+    private static void applyFilter(Criteria field, FieldDefinition definition, String rawValue) {
+        CustomFieldType type = definition.getFieldType();
+        boolean rangeable = type == CustomFieldType.NUMBER || type == CustomFieldType.DATE;
+        if (rangeable && rawValue.contains(RANGE_SEPARATOR)) {
+            int separator = rawValue.indexOf(RANGE_SEPARATOR);
+            String min = rawValue.substring(0, separator).trim();
+            String max = rawValue.substring(separator + RANGE_SEPARATOR.length()).trim();
+            if (min.isEmpty() && max.isEmpty()) {
+                throw new IllegalArgumentException("Field '" + definition.getFieldName() + "' has an empty range.");
+            }
+            if (!min.isEmpty()) {
+                field.gte(parseValue(type, min, definition));
+            }
+            if (!max.isEmpty()) {
+                field.lte(parseValue(type, max, definition));
+            }
+            return;
+        }
+        String[] parts = rawValue.split(",");
+        if (parts.length == 1) {
+            field.is(parseValue(type, parts[0].trim(), definition));
+            return;
+        }
+        List<Object> values = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            values.add(parseValue(type, part.trim(), definition));
+        }
+        field.in(values);
+    }
+
+    private static Object parseValue(CustomFieldType type, String value, FieldDefinition definition) {
+        switch (type) {
+            case NUMBER:
+                try {
+                    return Double.valueOf(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Field '" + definition.getFieldName() + "' expects numbers.");
+                }
+            case BOOLEAN:
+                if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                    throw new IllegalArgumentException("Field '" + definition.getFieldName() + "' expects true or false.");
+                }
+                return Boolean.valueOf(value);
+            case CHECKBOX:
+                // A checkbox without options is a single flag; with options it behaves like MULTI_SELECT.
+                if (definition.getOptions() == null || definition.getOptions().isEmpty()) {
+                    return parseValue(CustomFieldType.BOOLEAN, value, definition);
+                }
+                return value;
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.mysillydreams.product.search;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over product names and descriptions, ranked with BM25. Query terms also
+ * match indexed terms they are a prefix of (search-as-you-type) and, for longer terms, terms within
+ * a small edit distance (typos); such expanded matches score lower than exact ones.
+ *
+ * <p>The index is rebuilt from Mongo on startup. Writes made by this instance are indexed right away
+ * through {@link #index(Product)} and {@link #remove(String)}; {@link ProductSearchIndexFeed} applies
+ * every product change from the change outbox, which brings in the writes of other replicas. The
+ * same change may therefore arrive twice or late, so a copy older than the indexed version is ignored.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    // BM25 parameters and field weighting: a term in the name counts as much as NAME_WEIGHT occurrences in the description.
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+
+    private static final double PREFIX_MATCH_FACTOR = 0.8;
+    private static final double FUZZY_MATCH_FACTOR = 0.6;
+    private static final int MAX_EXPANSIONS_PER_TERM = 50;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MAX_FUZZY_CANDIDATES = 2000; // Edit distances computed per query term
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // All guarded by lock
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>(); // term -> (product id -> weighted tf)
+    private final Map<String, IndexedDocument> documents = new HashMap<>();
+    private final Map<Integer, NavigableSet<String>> termsByLength = new HashMap<>(); // Fuzzy candidates
+    private long totalLength;
+    private Set<String> writtenDuringRebuild; // Non-null while a rebuild runs
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Re-indexes every product from Mongo. Products written through {@link #index(Product)} or
+     * {@link #remove(String)} while the rebuild runs are skipped, since the copy read from the
+     * cursor may be older than the one already indexed.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writtenDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int count = 0;
+        try (Stream<Product> products = productRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                lock.writeLock().lock();
+                try {
+                    if (!writtenDuringRebuild.contains(product.getId())) {
+                        doIndex(product);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                count++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Rebuilding the product search index failed after {} products", count, e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writtenDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Product search index rebuilt with {} products in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.add(product.getId());
+            }
+            doIndex(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringRebuild != null) {
+                writtenDuringRebuild.add(productId);
+            }
+            doRemove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of matching products, best match first
+     */
+    public List<SearchHit> search(String query) {
+        List<String> queryTerms = TextAnalyzer.tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documents.size();
+            for (String queryTerm : queryTerms) {
+                // A document scores by its best expansion of each query term, so expansions do not add up.
+                Map<String, Double> termScores = new HashMap<>();
+                for (Map.Entry<String, Double> expansion : expand(queryTerm).entrySet()) {
+                    Map<String, Integer> termPostings = postings.get(expansion.getKey());
+                    double idf = Math.log(1 + (documents.size() - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                    for (Map.Entry<String, Integer> posting : termPostings.entrySet()) {
+                        int tf = posting.getValue();
+                        int length = documents.get(posting.getKey()).length;
+                        double score = expansion.getValue() * idf * tf * (K1 + 1)
+                                / (tf + K1 * (1 - B + B * length / averageLength));
+                        termScores.merge(posting.getKey(), score, Math::max);
+                    }
+                }
+                termScores.forEach((id, score) -> scores.merge(id, score, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SearchHit> hits = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> hits.add(new SearchHit(id, score)));
+        hits.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : a.productId.compareTo(b.productId));
+        return hits;
+    }
+
+    /**
+     * Maps a query term to the indexed terms it matches and the factor applied to their scores.
+     * Must be called with the read lock held.
+     */
+    private Map<String, Double> expand(String queryTerm) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            expansions.put(queryTerm, 1.0);
+        }
+        if (queryTerm.length() >= MIN_PREFIX_LENGTH) {
+            for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+                if (expansions.size() >= MAX_EXPANSIONS_PER_TERM) {
+                    break;
+                }
+                expansions.put(term, PREFIX_MATCH_FACTOR);
+            }
+        }
+        if (queryTerm.length() >= MIN_FUZZY_LENGTH) {
+            int maxDistance = queryTerm.length() >= 8 ? 2 : 1;
+            // Typos in the first character are not corrected, and terms whose length differs by more than
+            // the distance cannot match; that keeps the scan to a few slices of the dictionary.
+            String first = queryTerm.substring(0, 1);
+            int candidates = 0;
+            for (int length = queryTerm.length() - maxDistance; length <= queryTerm.length() + maxDistance; length++) {
+                NavigableSet<String> terms = termsByLength.get(length);
+                if (terms == null) {
+                    continue;
+                }
+                for (String term : terms.subSet(first, true, first + Character.MAX_VALUE, false)) {
+                    if (expansions.size() >= MAX_EXPANSIONS_PER_TERM || candidates++ >= MAX_FUZZY_CANDIDATES) {
+                        return expansions;
+                    }
+                    if (!expansions.containsKey(term) && TextAnalyzer.boundedEditDistance(queryTerm, term, maxDistance) <= maxDistance) {
+                        expansions.put(term, FUZZY_MATCH_FACTOR);
+                    }
+                }
+            }
+        }
+        return expansions;
+    }
+
+    private void doIndex(Product product) {
+        IndexedDocument existing = documents.get(product.getId());
+        if (existing != null && existing.version != null && product.getVersion() != null
+                && product.getVersion() < existing.version) {
+            return; // A late copy, e.g. the feed replaying a change this instance already indexed
+        }
+        doRemove(product.getId());
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<String> nameTerms = TextAnalyzer.tokenize(product.getName());
+        List<String> descriptionTerms = TextAnalyzer.tokenize(product.getDescription());
+        for (String term : nameTerms) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : descriptionTerms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        if (frequencies.isEmpty()) {
+            return;
+        }
+        int length = nameTerms.size() * NAME_WEIGHT + descriptionTerms.size();
+        frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> {
+            termsByLength.computeIfAbsent(t.length(), l -> new TreeSet<>()).add(t);
+            return new HashMap<>();
+        }).put(product.getId(), tf));
+        documents.put(product.getId(), new IndexedDocument(frequencies.keySet().toArray(new String[0]), length,
+                product.getVersion()));
+        totalLength += length;
+    }
+
+    private void doRemove(String productId) {
+        IndexedDocument existing = documents.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        totalLength -= existing.length;
+        for (String term : existing.terms) {
+            Map<String, Integer> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                    NavigableSet<String> sameLength = termsByLength.get(term.length());
+                    sameLength.remove(term);
+                    if (sameLength.isEmpty()) {
+                        termsByLength.remove(term.length());
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class IndexedDocument {
+        private final String[] terms;
+        private final int length;
+        private final Long version;
+
+        private IndexedDocument(String[] terms, int length, Long version) {
+            this.terms = terms;
+            this.length = length;
+            this.version = version;
+        }
+    }
+
+    public static final class SearchHit {
+        private final String productId;
+        private final double score;
+
+        SearchHit(String productId, double score) {
+            this.productId = productId;
+            this.score = score;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mysillydreams.product.search;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
+import com.mysillydreams.product.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link ProductSearchIndex} of every replica in step by applying product changes from the
+ * change outbox, so a product written through one instance becomes searchable on all of them.
+ * <p>
+ * On startup the current outbox sequence is noted before the index is rebuilt; changes after it are
+ * then applied in order on a single thread, which covers writes the rebuild's cursor had already
+ * passed. Both deployment modes append their writes to the outbox; the reactive mode does so through
+ * {@link com.mysillydreams.product.reactive.ReactiveChangeOutbox}.
+ */
+@Component
+public class ProductSearchIndexFeed implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndexFeed.class);
+
+    private final ProductSearchIndex searchIndex;
+    private final ProductChangeOutbox outbox;
+    private final ProductRepository productRepository;
+    private final long pollIntervalMillis;
+    private final int batchSize;
+    private ScheduledExecutorService executor;
+    private long applied = -1; // Sequence of the last change applied; executor thread only, -1 until rebuilt
+
+    public ProductSearchIndexFeed(ProductSearchIndex searchIndex, ProductChangeOutbox outbox,
+                                  ProductRepository productRepository,
+                                  @Value("${product.search.sync-interval:PT1S}") Duration pollInterval,
+                                  @Value("${product.search.sync-batch-size:500}") int batchSize) {
+        this.searchIndex = searchIndex;
+        this.outbox = outbox;
+        this.productRepository = productRepository;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-search-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null && !executor.isShutdown();
+    }
+
+    private void poll() {
+        try {
+            if (applied < 0) {
+                long latest = outbox.latestSequence();
+                searchIndex.rebuild();
+                applied = latest;
+            }
+            List<ProductChangeEvent> events;
+            do {
+                events = outbox.read(applied, batchSize);
+                for (ProductChangeEvent event : events) {
+                    if (event.getEntityType() == ProductChangeEvent.EntityType.PRODUCT) {
+                        apply(event);
+                    }
+                    applied = event.getSequence();
+                }
+            } while (events.size() == batchSize);
+        } catch (RuntimeException e) {
+            // Must not escape, or the scheduled poll stops for good; the next poll resumes after the last applied change.
+            log.warn("Applying product changes to the search index failed after sequence {}", applied, e);
+        }
+    }
+
+    private void apply(ProductChangeEvent event) {
+        if (event.getOperation() == ProductChangeEvent.Operation.DELETED) {
+            searchIndex.remove(event.getEntityId());
+        } else if (event.getData() instanceof Product product) {
+            searchIndex.index(product);
+        } else {
+            // Not mapped back to a Product; a later change of the same product supersedes whatever is read here.
+            productRepository.findById(event.getEntityId()).ifPresent(searchIndex::index);
+        }
+    }
+}
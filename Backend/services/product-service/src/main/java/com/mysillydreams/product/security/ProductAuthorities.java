@@ -0,0 +1,56 @@
+package com.mysillydreams.product.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.function.Function;
+
+/**
+ * Role checks and the product ownership rule shared by the servlet and reactive controllers.
+ */
+public final class ProductAuthorities {
+
+    public static final String ROLE_ADMIN = "ROLE_admin";
+    public static final String ROLE_VENDOR = "ROLE_vendor";
+    public static final String ADMIN_VENDOR_PREFIX = "admin_";
+
+    private ProductAuthorities() {
+    }
+
+    public static boolean hasAuthority(Authentication authentication, String authority) {
+        if (authentication instanceof RoleAwareJwtAuthenticationToken token) {
+            // Precomputed when the token was converted; no scan of the authority list
+            if (ROLE_ADMIN.equals(authority)) {
+                return token.isAdmin();
+            }
+            if (ROLE_VENDOR.equals(authority)) {
+                return token.isVendor();
+            }
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(role -> role.equals(authority));
+    }
+
+    /**
+     * Returns the rule that decides which vendor owns a product created by the caller: admins may name
+     * any vendor and otherwise own the product themselves, vendors always own what they create.
+     * Returns null if the caller may not create products at all.
+     */
+    public static Function<String, String> vendorIdResolver(Authentication authentication) {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        String keycloakUserId = jwt.getSubject();
+        boolean isAdmin = hasAuthority(authentication, ROLE_ADMIN);
+        boolean isVendor = hasAuthority(authentication, ROLE_VENDOR);
+        if (!isAdmin && !isVendor) {
+            return null;
+        }
+        return requestedVendorId -> {
+            if (isAdmin && requestedVendorId != null) {
+                return requestedVendorId;
+            }
+            return isVendor ? keycloakUserId : ADMIN_VENDOR_PREFIX + keycloakUserId;
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package com.mysillydreams.product.security;
+
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.repositories.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ownership check behind {@code @productSecurity.isOwner(authentication, #id)} on vendor writes.
+ * <p>
+ * A product's vendorId never changes after creation, so owners are kept in a small bounded cache and
+ * a repeat write by the same vendor needs no read at all; only a delete removes an entry. On a miss
+ * only the header projection is read, and it is kept for the rest of the request so the write path
+ * ({@link #findHeader(String)}) does not read it again.
+ */
+@Component("productSecurity")
+public class ProductSecurity {
+
+    private static final String HEADER_ATTRIBUTE_PREFIX = ProductSecurity.class.getName() + ".header.";
+
+    private final ProductRepository productRepository;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, String> vendorIdsByProductId; // Guarded by lock
+
+    public ProductSecurity(ProductRepository productRepository,
+                           @Value("${product.security.owner-cache.max-size:10000}") int maxSize) {
+        this.productRepository = productRepository;
+        this.vendorIdsByProductId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public boolean isOwner(Authentication authentication, String productId) {
+        if (!(authentication.getPrincipal() instanceof Jwt jwt)) {
+            return false;
+        }
+        String vendorId = cachedVendorId(productId);
+        if (vendorId == null) {
+            Optional<Product> header = findHeader(productId);
+            if (header.isEmpty()) {
+                return true; // A missing product is left to the handler, which answers 404
+            }
+            vendorId = header.get().getVendorId();
+            if (vendorId == null) {
+                return false;
+            }
+            rememberVendorId(productId, vendorId);
+        }
+        return jwt.getSubject().equals(vendorId);
+    }
+
+    /**
+     * Reads the header projection (vendorId, productTypeId, version, lastModified) of a product, at
+     * most once per request.
+     */
+    public Optional<Product> findHeader(String productId) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        String attribute = HEADER_ATTRIBUTE_PREFIX + productId;
+        if (request != null) {
+            @SuppressWarnings("unchecked")
+            Optional<Product> loaded = (Optional<Product>) request.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST);
+            if (loaded != null) {
+                return loaded;
+            }
+        }
+        Optional<Product> header = productRepository.findHeaderById(productId);
+        if (request != null) {
+            request.setAttribute(attribute, header, RequestAttributes.SCOPE_REQUEST);
+        }
+        return header;
+    }
+
+    /**
+     * Forgets a deleted product. Ids are never reused, so an entry that survives on another instance
+     * only ever leads to a 404 from the handler.
+     */
+    public void evict(String productId) {
+        lock.lock();
+        try {
+            vendorIdsByProductId.remove(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String cachedVendorId(String productId) {
+        lock.lock();
+        try {
+            return vendorIdsByProductId.get(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rememberVendorId(String productId, String vendorId) {
+        lock.lock();
+        try {
+            vendorIdsByProductId.put(productId, vendorId);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mysillydreams.product.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+
+/**
+ * JWT authentication that carries the product-service role checks as precomputed flags, so
+ * controllers do not scan the authority list on every request.
+ */
+public class RoleAwareJwtAuthenticationToken extends JwtAuthenticationToken {
+
+    private final boolean admin;
+    private final boolean vendor;
+
+    public RoleAwareJwtAuthenticationToken(Jwt jwt, Collection<? extends GrantedAuthority> authorities,
+                                           boolean admin, boolean vendor) {
+        super(jwt, authorities, jwt.getSubject());
+        this.admin = admin;
+        this.vendor = vendor;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public boolean isVendor() {
+        return vendor;
+    }
+}
@@ -0,0 +1,205 @@
+package com.mysillydreams.product.services;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.dtos.BulkImportReportDto;
+import com.mysillydreams.product.dtos.BulkItemResultDto;
+import com.mysillydreams.product.dtos.ProductCreateDto;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
+import com.mysillydreams.product.search.ProductSearchIndex;
+import com.mysillydreams.product.validation.AttributeValidatorCache;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Imports vendor catalogues in batches. Product types are resolved once per import, items of a batch
+ * are validated in parallel, and valid items are written with a single unordered bulk insert per
+ * batch so one bad document does not stop the rest of the batch.
+ */
+@Service
+public class ProductBulkImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductBulkImportService.class);
+
+    private final ProductTypeCache productTypeCache;
+    private final AttributeValidatorCache attributeValidators;
+    private final MongoTemplate mongoTemplate;
+    private final ProductSearchIndex searchIndex;
+    private final ProductChangeOutbox changeOutbox;
+    private final int batchSize;
+    private final int maxItems;
+
+    public ProductBulkImportService(ProductTypeCache productTypeCache,
+                                    AttributeValidatorCache attributeValidators,
+                                    MongoTemplate mongoTemplate,
+                                    ProductSearchIndex searchIndex,
+                                    ProductChangeOutbox changeOutbox,
+                                    @Value("${product.bulk.batch-size:1000}") int batchSize,
+                                    @Value("${product.bulk.max-items:200000}") int maxItems) {
+        this.productTypeCache = productTypeCache;
+        this.attributeValidators = attributeValidators;
+        this.mongoTemplate = mongoTemplate;
+        this.searchIndex = searchIndex;
+        this.changeOutbox = changeOutbox;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * @param items            the uploaded items, consumed lazily so large uploads are never fully in memory
+     * @param vendorIdResolver maps the vendorId requested by an item to the one it is stored with
+     */
+    public BulkImportReportDto importProducts(Iterator<ProductCreateDto> items, Function<String, String> vendorIdResolver) {
+        long start = System.nanoTime();
+        BulkImportReportDto report = new BulkImportReportDto();
+        Map<String, Optional<ProductType>> productTypes = new HashMap<>();
+        List<ProductCreateDto> batch = new ArrayList<>(batchSize);
+        int index = 0;
+        while (true) {
+            ProductCreateDto item;
+            try {
+                if (!items.hasNext()) {
+                    break;
+                }
+                if (index >= maxItems) {
+                    report.setError("Upload exceeds the maximum of " + maxItems + " items; remaining items were ignored.");
+                    break;
+                }
+                item = items.next();
+            } catch (RuntimeException e) {
+                // Malformed input: keep what was read so far and report where reading stopped.
+                log.warn("Bulk import input could not be read past item {}", index, e);
+                report.setError("Could not read item at index " + index + ": " + e.getMessage());
+                break;
+            }
+            batch.add(item);
+            index++;
+            if (batch.size() == batchSize) {
+                // Write failures other than per-document errors propagate; a batch is never written twice.
+                processBatch(batch, index - batch.size(), productTypes, vendorIdResolver, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            processBatch(batch, index - batch.size(), productTypes, vendorIdResolver, report);
+        }
+
+        report.setReceived(index);
+        report.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Bulk import finished: {} items ({} created, {} rejected, {} failed) in {} ms",
+                index, report.getCreated(), report.getRejected(), report.getFailed(), report.getDurationMillis());
+        return report;
+    }
+
+    private void processBatch(List<ProductCreateDto> batch, int firstIndex, Map<String, Optional<ProductType>> productTypes,
+                              Function<String, String> vendorIdResolver, BulkImportReportDto report) {
+        // Resolve every type referenced by the batch up front; the parallel phase then only reads the map.
+        for (ProductCreateDto item : batch) {
+            String typeId = item.getProductTypeId();
+            if (typeId != null && !productTypes.containsKey(typeId)) {
+                productTypes.put(typeId, productTypeCache.findById(typeId));
+            }
+        }
+
+        String[] errors = new String[batch.size()];
+        IntStream.range(0, batch.size()).parallel().forEach(i -> errors[i] = validate(batch.get(i), productTypes));
+
+        List<Product> products = new ArrayList<>(batch.size());
+        List<Integer> productIndexes = new ArrayList<>(batch.size());
+        BulkItemResultDto[] results = new BulkItemResultDto[batch.size()];
+        Instant now = Instant.now();
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] != null) {
+                results[i] = new BulkItemResultDto(firstIndex + i, BulkItemResultDto.Status.REJECTED, null, errors[i]);
+                continue;
+            }
+            Product product = toProduct(batch.get(i), vendorIdResolver, now);
+            products.add(product);
+            productIndexes.add(i);
+            results[i] = new BulkItemResultDto(firstIndex + i, BulkItemResultDto.Status.CREATED, product.getId(), null);
+        }
+
+        if (!products.isEmpty()) {
+            boolean[] failed = new boolean[products.size()];
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class).insert(products).execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError writeError : e.getErrors()) {
+                    failed[writeError.getIndex()] = true;
+                    BulkItemResultDto result = results[productIndexes.get(writeError.getIndex())];
+                    result.setStatus(BulkItemResultDto.Status.FAILED);
+                    result.setId(null);
+                    result.setError(writeError.getMessage());
+                }
+            }
+            // An unordered bulk insert cannot share a transaction with the outbox; the events of the
+            // inserted documents are appended together afterwards.
+            List<ProductChangeEvent> changes = new ArrayList<>(products.size());
+            for (int i = 0; i < products.size(); i++) {
+                if (!failed[i]) {
+                    searchIndex.index(products.get(i));
+                    changes.add(ProductChangeEvent.of(ProductChangeEvent.Operation.CREATED, products.get(i)));
+                }
+            }
+            changeOutbox.appendAll(changes);
+        }
+
+        for (BulkItemResultDto result : results) {
+            switch (result.getStatus()) {
+                case CREATED -> report.setCreated(report.getCreated() + 1);
+                case REJECTED -> report.setRejected(report.getRejected() + 1);
+                case FAILED -> report.setFailed(report.getFailed() + 1);
+            }
+            report.getResults().add(result);
+        }
+    }
+
+    private String validate(ProductCreateDto item, Map<String, Optional<ProductType>> productTypes) {
+        if (item == null) {
+            return "Item is empty.";
+        }
+        if (item.getProductTypeId() == null) {
+            return "ProductType ID is required.";
+        }
+        Optional<ProductType> productType = productTypes.get(item.getProductTypeId());
+        if (productType.isEmpty()) {
+            return "Invalid ProductType ID: " + item.getProductTypeId();
+        }
+        String validationError = attributeValidators.forType(productType.get()).validate(item.getCustomAttributes());
+        return validationError == null ? null : "Validation error in custom attributes: " + validationError;
+    }
+
+    private Product toProduct(ProductCreateDto item, Function<String, String> vendorIdResolver, Instant now) {
+        Product product = new Product();
+        // Ids are assigned here so they can be reported per item without reading the documents back.
+        product.setId(new ObjectId().toHexString());
+        product.setName(item.getName());
+        product.setDescription(item.getDescription());
+        product.setBasePrice(item.getBasePrice());
+        product.setProductTypeId(item.getProductTypeId());
+        product.setVendorId(vendorIdResolver.apply(item.getVendorId()));
+        product.setCustomAttributes(item.getCustomAttributes());
+        product.setVersion(0L);
+        product.setLastModified(now);
+        return product;
+    }
+}
@@ -0,0 +1,268 @@
+package com.mysillydreams.product.services;
+
+import com.mysillydreams.product.cache.ProductTypeCache;
+import com.mysillydreams.product.dtos.ProductUpdateDto;
+import com.mysillydreams.product.http.EntityTags;
+import com.mysillydreams.product.models.Product;
+import com.mysillydreams.product.models.ProductType;
+import com.mysillydreams.product.outbox.ProductChangeEvent;
+import com.mysillydreams.product.outbox.ProductChangeOutbox;
+import com.mysillydreams.product.repositories.ProductRepository;
+import com.mysillydreams.product.search.AttributeIndexManager;
+import com.mysillydreams.product.search.ProductSearchIndex;
+import com.mysillydreams.product.security.ProductSecurity;
+import com.mysillydreams.product.validation.CompiledAttributeValidator;
+import com.mysillydreams.product.validation.AttributeValidatorCache;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Applies product updates as targeted $set/$unset operations in a single findAndModify, instead of
+ * rewriting the whole document. Every write increments the version, and an expected version (from
+ * If-Match or the request body) is part of the write's filter, so concurrent edits are detected by
+ * the database rather than silently overwritten.
+ */
+@Service
+public class ProductUpdateService {
+
+    private static final String CUSTOM_ATTRIBUTES = "customAttributes";
+
+    private final ProductRepository productRepository;
+    private final ProductSecurity productSecurity;
+    private final ProductTypeCache productTypeCache;
+    private final AttributeValidatorCache attributeValidators;
+    private final ProductSearchIndex searchIndex;
+    private final ProductChangeOutbox changeOutbox;
+
+    public ProductUpdateService(ProductRepository productRepository, ProductSecurity productSecurity,
+                                ProductTypeCache productTypeCache, AttributeValidatorCache attributeValidators,
+                                ProductSearchIndex searchIndex, ProductChangeOutbox changeOutbox) {
+        this.productRepository = productRepository;
+        this.productSecurity = productSecurity;
+        this.productTypeCache = productTypeCache;
+        this.attributeValidators = attributeValidators;
+        this.searchIndex = searchIndex;
+        this.changeOutbox = changeOutbox;
+    }
+
+    /**
+     * Sets the non-null fields of the DTO. A non-null customAttributes map replaces the stored one.
+     */
+    public UpdateResult update(String id, ProductUpdateDto productUpdateDto, String ifMatch) {
+        Set<Long> expectedVersions = EntityTags.expectedVersions(ifMatch, id, productUpdateDto.getVersion());
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return UpdateResult.of(UpdateResult.Status.PRECONDITION_FAILED);
+        }
+
+        Update update = new Update();
+        if (productUpdateDto.getCustomAttributes() != null) {
+            ValidatorLookup lookup = validatorFor(id);
+            if (lookup.failure != null) {
+                return lookup.failure;
+            }
+            String validationError = lookup.validator.validate(productUpdateDto.getCustomAttributes());
+            if (validationError != null) {
+                return UpdateResult.invalid("Validation error in custom attributes: " + validationError);
+            }
+            update.set(CUSTOM_ATTRIBUTES, productUpdateDto.getCustomAttributes());
+        }
+        if (productUpdateDto.getName() != null) update.set("name", productUpdateDto.getName());
+        if (productUpdateDto.getDescription() != null) update.set("description", productUpdateDto.getDescription());
+        if (productUpdateDto.getBasePrice() != null) update.set("basePrice", productUpdateDto.getBasePrice());
+        return apply(id, expectedVersions, update);
+    }
+
+    /**
+     * Applies a JSON Merge Patch (RFC 7386). Members set to null are removed; customAttributes is
+     * merged key by key, so only the attributes named in the patch are written.
+     */
+    public UpdateResult patch(String id, Map<String, Object> mergePatch, String ifMatch) {
+        Set<Long> expectedVersions = EntityTags.versionsIn(ifMatch, id);
+        if (expectedVersions != null && expectedVersions.isEmpty()) {
+            return UpdateResult.of(UpdateResult.Status.PRECONDITION_FAILED);
+        }
+
+        Update update = new Update();
+        for (Map.Entry<String, Object> member : mergePatch.entrySet()) {
+            Object value = member.getValue();
+            switch (member.getKey()) {
+                case "name":
+                    if (!(value instanceof String)) {
+                        return UpdateResult.invalid("Field 'name' must be a string and cannot be removed.");
+                    }
+                    update.set("name", value);
+                    break;
+                case "description":
+                    if (value == null) {
+                        update.unset("description");
+                    } else if (value instanceof String) {
+                        update.set("description", value);
+                    } else {
+                        return UpdateResult.invalid("Field 'description' must be a string.");
+                    }
+                    break;
+                case "basePrice":
+                    if (value == null) {
+                        update.unset("basePrice");
+                        break;
+                    }
+                    BigDecimal basePrice = toDecimal(value);
+                    if (basePrice == null) {
+                        return UpdateResult.invalid("Field 'basePrice' must be a number.");
+                    }
+                    update.set("basePrice", basePrice);
+                    break;
+                case CUSTOM_ATTRIBUTES:
+                    UpdateResult failure = patchCustomAttributes(id, value, update);
+                    if (failure != null) {
+                        return failure;
+                    }
+                    break;
+                default:
+                    return UpdateResult.invalid("Field '" + member.getKey() + "' cannot be patched.");
+            }
+        }
+        return apply(id, expectedVersions, update);
+    }
+
+    /**
+     * @return the JSON number as a decimal, or null if it is not a finite number
+     */
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            // NaN and Infinity reach here when the parser allows non-numeric numbers.
+            double number = ((Number) value).doubleValue();
+            return Double.isFinite(number) ? BigDecimal.valueOf(number) : null;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        return null;
+    }
+
+    private UpdateResult patchCustomAttributes(String id, Object value, Update update) {
+        if (value != null && !(value instanceof Map)) {
+            return UpdateResult.invalid("Field 'customAttributes' must be an object.");
+        }
+        ValidatorLookup lookup = validatorFor(id);
+        if (lookup.failure != null) {
+            return lookup.failure;
+        }
+        if (value == null) {
+            String validationError = lookup.validator.validate(null);
+            if (validationError != null) {
+                return UpdateResult.invalid("Validation error in custom attributes: " + validationError);
+            }
+            update.unset(CUSTOM_ATTRIBUTES);
+            return null;
+        }
+        for (Map.Entry<?, ?> attribute : ((Map<?, ?>) value).entrySet()) {
+            String fieldName = String.valueOf(attribute.getKey());
+            if (!AttributeIndexManager.isIndexableFieldName(fieldName)) {
+                return UpdateResult.invalid("Invalid custom attribute name: " + fieldName);
+            }
+            String validationError = lookup.validator.validateField(fieldName, attribute.getValue());
+            if (validationError != null) {
+                return UpdateResult.invalid("Validation error in custom attributes: " + validationError);
+            }
+            String path = CUSTOM_ATTRIBUTES + "." + fieldName;
+            if (attribute.getValue() == null) {
+                update.unset(path);
+            } else {
+                update.set(path, attribute.getValue());
+            }
+        }
+        return null;
+    }
+
+    private UpdateResult apply(String id, Set<Long> expectedVersions, Update update) {
+        update.inc("version", 1).set("lastModified", Instant.now());
+        Product updated = changeOutbox.write(() -> productRepository.updateIfVersion(id, expectedVersions, update),
+                product -> product == null ? null : ProductChangeEvent.of(ProductChangeEvent.Operation.UPDATED, product));
+        if (updated == null) {
+            // Only a failed conditional write needs the extra read to tell the two outcomes apart.
+            boolean exists = expectedVersions != null && productRepository.existsById(id);
+            return UpdateResult.of(exists ? UpdateResult.Status.PRECONDITION_FAILED : UpdateResult.Status.NOT_FOUND);
+        }
+        searchIndex.index(updated);
+        return new UpdateResult(UpdateResult.Status.UPDATED, updated, null);
+    }
+
+    private ValidatorLookup validatorFor(String id) {
+        // productTypeId never changes after creation, so reading it ahead of the write is safe. The header
+        // is usually already loaded by the ownership check for this request.
+        Optional<Product> header = productSecurity.findHeader(id);
+        if (header.isEmpty()) {
+            return new ValidatorLookup(null, UpdateResult.of(UpdateResult.Status.NOT_FOUND));
+        }
+        Optional<ProductType> productType = productTypeCache.findById(header.get().getProductTypeId());
+        if (productType.isEmpty()) {
+            return new ValidatorLookup(null, UpdateResult.of(UpdateResult.Status.INCONSISTENT));
+        }
+        return new ValidatorLookup(attributeValidators.forType(productType.get()), null);
+    }
+
+    private static final class ValidatorLookup {
+        private final CompiledAttributeValidator validator;
+        private final UpdateResult failure;
+
+        private ValidatorLookup(CompiledAttributeValidator validator, UpdateResult failure) {
+            this.validator = validator;
+            this.failure = failure;
+        }
+    }
+
+    public static final class UpdateResult {
+
+        public enum Status { UPDATED, NOT_FOUND, PRECONDITION_FAILED, INVALID, INCONSISTENT }
+
+        private final Status status;
+        private final Product product;
+        private final String error;
+
+        private UpdateResult(Status status, Product product, String error) {
+            this.status = status;
+            this.product = product;
+            this.error = error;
+        }
+
+        private static UpdateResult of(Status status) {
+            return new UpdateResult(status, null, null);
+        }
+
+        private static UpdateResult invalid(String error) {
+            return new UpdateResult(Status.INVALID, null, error);
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the product as stored after the update, when the status is UPDATED
+         */
+        public Product getProduct() {
+            return product;
+        }
+
+        /**
+         * @return the validation error, when the status is INVALID
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
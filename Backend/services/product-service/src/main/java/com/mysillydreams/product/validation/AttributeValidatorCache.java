@@ -0,0 +1,45 @@
+package com.mysillydreams.product.validation;
+
+import com.mysillydreams.product.events.ProductTypeChangedEvent;
+import com.mysillydreams.product.models.ProductType;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds one {@link CompiledAttributeValidator} per product type. Entries are keyed by type id and
+ * checked against the type's version, so a validator compiled from an older revision is never used
+ * even if an explicit invalidation was missed.
+ */
+@Component
+public class AttributeValidatorCache {
+
+    private final ConcurrentMap<String, CompiledAttributeValidator> validators = new ConcurrentHashMap<>();
+
+    public CompiledAttributeValidator forType(ProductType productType) {
+        if (productType.getId() == null) {
+            return CompiledAttributeValidator.compile(productType);
+        }
+        CompiledAttributeValidator validator = validators.get(productType.getId());
+        if (validator == null || !validator.isCompiledFrom(productType)) {
+            validator = CompiledAttributeValidator.compile(productType);
+            validators.put(productType.getId(), validator);
+        }
+        return validator;
+    }
+
+    public void invalidate(String productTypeId) {
+        validators.remove(productTypeId);
+    }
+
+    @EventListener
+    public void onProductTypeChanged(ProductTypeChangedEvent event) {
+        if (event.getProductTypeId() == null) {
+            validators.clear();
+        } else {
+            invalidate(event.getProductTypeId());
+        }
+    }
+}
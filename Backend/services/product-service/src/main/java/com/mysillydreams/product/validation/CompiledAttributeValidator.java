@@ -0,0 +1,199 @@
+package com.mysillydreams.product.validation;
+
+import com.mysillydreams.product.models.CustomFieldType;
+import com.mysillydreams.product.models.FieldDefinition;
+import com.mysillydreams.product.models.ProductType;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Validator for the custom attributes of one {@link ProductType}, compiled once from its field
+ * definitions. Rules, option sets and date formats are prepared up front so validating a product
+ * only does map lookups and type checks; error messages are built only when validation fails.
+ */
+public final class CompiledAttributeValidator {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final FieldRule[] NO_RULES = new FieldRule[0];
+
+    private final String productTypeId;
+    private final Long version;
+    private final FieldRule[] rules;
+    private final boolean hasRequiredFields;
+    private final Map<String, FieldRule> rulesByName;
+
+    private CompiledAttributeValidator(String productTypeId, Long version, FieldRule[] rules) {
+        this.productTypeId = productTypeId;
+        this.version = version;
+        this.rules = rules;
+        this.rulesByName = new HashMap<>(rules.length * 2);
+        boolean required = false;
+        for (FieldRule rule : rules) {
+            rulesByName.put(rule.name, rule);
+            required |= rule.required;
+        }
+        this.hasRequiredFields = required;
+    }
+
+    public static CompiledAttributeValidator compile(ProductType productType) {
+        List<FieldDefinition> definitions = productType.getFieldDefinitions();
+        if (definitions == null || definitions.isEmpty()) {
+            return new CompiledAttributeValidator(productType.getId(), productType.getVersion(), NO_RULES);
+        }
+        List<FieldRule> rules = new ArrayList<>(definitions.size());
+        for (FieldDefinition definition : definitions) {
+            if (definition.getFieldName() != null) {
+                rules.add(new FieldRule(definition));
+            }
+        }
+        return new CompiledAttributeValidator(productType.getId(), productType.getVersion(), rules.toArray(NO_RULES));
+    }
+
+    /**
+     * @return true if this validator was compiled from the given revision of the product type
+     */
+    public boolean isCompiledFrom(ProductType productType) {
+        return Objects.equals(productTypeId, productType.getId()) && Objects.equals(version, productType.getVersion());
+    }
+
+    /**
+     * Validates a complete custom attributes map.
+     *
+     * @return a human readable error, or null if the attributes are valid
+     */
+    public String validate(Map<String, Object> customAttributes) {
+        if (customAttributes == null) {
+            return hasRequiredFields ? "Required custom attributes map is missing." : null;
+        }
+        for (FieldRule rule : rules) {
+            Object value = customAttributes.get(rule.name);
+            if (value == null) {
+                if (rule.required) {
+                    return String.format("Required field '%s' (%s) is missing.", rule.label, rule.name);
+                }
+            } else if (!rule.accepts(value)) {
+                return rule.describeMismatch();
+            }
+        }
+        // Attributes that are not declared by the product type are tolerated.
+        return null;
+    }
+
+    /**
+     * Validates a single attribute value, e.g. for partial updates. A null value means the
+     * attribute is being removed.
+     *
+     * @return a human readable error, or null if the value is acceptable
+     */
+    public String validateField(String fieldName, Object value) {
+        FieldRule rule = rulesByName.get(fieldName);
+        if (rule == null) {
+            return null;
+        }
+        if (value == null) {
+            return rule.required ? String.format("Required field '%s' (%s) cannot be removed.", rule.label, rule.name) : null;
+        }
+        return rule.accepts(value) ? null : rule.describeMismatch();
+    }
+
+    private static final class FieldRule {
+        private final String name;
+        private final String label;
+        private final CustomFieldType type;
+        private final boolean required;
+        private final Set<String> options; // null when any value is allowed
+
+        private FieldRule(FieldDefinition definition) {
+            this.name = definition.getFieldName();
+            this.label = definition.getFieldLabel() != null ? definition.getFieldLabel() : definition.getFieldName();
+            this.type = definition.getFieldType() != null ? definition.getFieldType() : CustomFieldType.TEXT;
+            this.required = definition.isRequired();
+            List<String> declaredOptions = definition.getOptions();
+            this.options = declaredOptions == null || declaredOptions.isEmpty() ? null : new HashSet<>(declaredOptions);
+        }
+
+        private boolean accepts(Object value) {
+            switch (type) {
+                case TEXT:
+                case TEXTAREA:
+                    return value instanceof String;
+                case NUMBER:
+                    return value instanceof Number;
+                case BOOLEAN:
+                    return value instanceof Boolean;
+                case DATE:
+                    return value instanceof String && isDate((String) value);
+                case SELECT:
+                    return value instanceof String && isOption(value);
+                case MULTI_SELECT:
+                    return value instanceof Collection && allOptions((Collection<?>) value);
+                case CHECKBOX:
+                    // A checkbox group when options are declared, otherwise a single flag.
+                    return options != null
+                            ? value instanceof Collection && allOptions((Collection<?>) value)
+                            : value instanceof Boolean;
+                default:
+                    return true;
+            }
+        }
+
+        private boolean isOption(Object value) {
+            return options == null || options.contains(value);
+        }
+
+        private boolean allOptions(Collection<?> values) {
+            for (Object value : values) {
+                if (!(value instanceof String) || !isOption(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isDate(String value) {
+            try {
+                LocalDate.parse(value, DATE_FORMAT);
+                return true;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+
+        private String describeMismatch() {
+            String expected;
+            switch (type) {
+                case NUMBER:
+                    expected = "a number";
+                    break;
+                case BOOLEAN:
+                    expected = "true or false";
+                    break;
+                case DATE:
+                    expected = "a date in yyyy-MM-dd format";
+                    break;
+                case SELECT:
+                    expected = options != null ? "one of " + options : "text";
+                    break;
+                case MULTI_SELECT:
+                    expected = options != null ? "a list of values from " + options : "a list of values";
+                    break;
+                case CHECKBOX:
+                    expected = options != null ? "a list of values from " + options : "true or false";
+                    break;
+                default:
+                    expected = "text";
+            }
+            return String.format("Field '%s' (%s) must be %s.", label, name, expected);
+        }
+    }
+}
@@ -1,21 +1,54 @@
 package com.mysillydreams.users.config;
 
+import jakarta.ws.rs.client.ClientBuilder;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.keycloak.admin.client.JacksonProvider;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class Config {
 
     @Bean
-    public Keycloak keycloak() {
+    public Keycloak keycloak(ResteasyClient keycloakAdminHttpClient) {
         return KeycloakBuilder.builder()
                 .serverUrl("http://localhost:8080/auth")
                 .realm("master")
                 .username("admin")
                 .password("<PASSWORD>")
                 .clientId("admin-cli")
+                .resteasyClient(keycloakAdminHttpClient)
+                .build();
+    }
+
+    /**
+     * HTTP client behind the Keycloak admin client. The library default is a 10-connection pool,
+     * which becomes the real concurrency limit once requests run on virtual threads; the pool is
+     * sized here and connection checkout is bounded so a saturated pool fails fast instead of
+     * parking request threads indefinitely.
+     */
+    @Bean(destroyMethod = "close")
+    public ResteasyClient keycloakAdminHttpClient(
+            @Value("${app.keycloak.admin.http.pool-size:64}") int poolSize,
+            @Value("${app.keycloak.admin.http.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${app.keycloak.admin.http.read-timeout:PT10S}") Duration readTimeout,
+            @Value("${app.keycloak.admin.http.checkout-timeout:PT5S}") Duration checkoutTimeout) {
+        ResteasyClientBuilder builder = (ResteasyClientBuilder) ClientBuilder.newBuilder();
+        // Same JSON provider the admin client registers on its own default client.
+        builder.register(JacksonProvider.class, 100);
+        return builder
+                .connectionPoolSize(poolSize)
+                .maxPooledPerRoute(poolSize)
+                .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .connectionCheckoutTimeout(checkoutTimeout.toMillis(), TimeUnit.MILLISECONDS)
                 .build();
     }
 }
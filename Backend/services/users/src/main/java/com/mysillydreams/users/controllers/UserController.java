@@ -1,41 +1,62 @@
 package com.mysillydreams.users.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.mysillydreams.users.dtos.UserPageDto;
 import com.mysillydreams.users.models.User;
-// Assume UserService interface exists in a package like com.mysillydreams.users.services
-// For now, this import might be commented out or point to a non-existent class
-// import com.mysillydreams.users.services.UserService; 
+import com.mysillydreams.users.pagination.CursorCodec;
+import com.mysillydreams.users.pagination.PageLimits;
+import com.mysillydreams.users.services.UserService;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.security.RolesAllowed; // For @RolesAllowed
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional; // Or however your service layer will return users
-
-
-// Placeholder for UserService - this interface would be in com.mysillydreams.users.services.UserService
-interface UserService {
-    Optional<User> findById(String id);
-    List<User> findAll();
-    // Other methods would be added later
-}
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/v1/user")
 public class UserController {
 
-    private final UserService userService; // Will be properly imported once created
+    private static final Logger log = LoggerFactory.getLogger(UserController.class);
+
+    private final UserService userService;
+    private final ObjectWriter ndjsonWriter;
+    private final int maxBatchIds;
 
-    // @Autowired // Or constructor injection
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper,
+                          @Value("${app.users.batch.max-ids:500}") int maxBatchIds) {
         this.userService = userService;
+        this.maxBatchIds = maxBatchIds;
+        // One line per document; the response stream must stay open between documents.
+        this.ndjsonWriter = objectMapper.writerFor(User.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @GetMapping("/{id}")
@@ -49,11 +70,9 @@ public class UserController {
     // @PreAuthorize("hasAuthority('ROLE_ADMIN')") // Simpler for now, or implement a utility for self-check
     public ResponseEntity<User> getUserById(@PathVariable String id, @AuthenticationPrincipal Jwt jwt) {
         // Manual check for self or admin:
-        List<String> roles = jwt.getClaimAsStringList("roles"); // Get roles claim
-        boolean isAdmin = roles != null && roles.contains("ROLE_ADMIN");
         boolean isSelf = jwt.getSubject().equals(id); // Assuming user ID in path is Keycloak subject
 
-        if (!isAdmin && !isSelf) {
+        if (!isAdmin(jwt) && !isSelf) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         
@@ -62,11 +81,96 @@ public class UserController {
                    .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Resolves up to {@code app.users.batch.max-ids} users in one call, e.g. all owners and reviewers
+     * shown on a page. The body is a JSON array of ids; the response maps each id found to its user,
+     * and ids without a user are left out. Same visibility rule as {@link #getUserById}: admins may
+     * look up anyone, other callers only themselves.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getUsersByIds(@RequestBody List<String> ids, @AuthenticationPrincipal Jwt jwt) {
+        Set<String> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.size() > maxBatchIds) {
+            return ResponseEntity.badRequest().body("At most " + maxBatchIds + " ids can be looked up at once.");
+        }
+        if (!isAdmin(jwt) && !distinctIds.stream().allMatch(jwt.getSubject()::equals)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(userService.findAllById(distinctIds));
+    }
+
     @GetMapping
     @RolesAllowed("ROLE_ADMIN") // JSR-250 annotation
     // Or @PreAuthorize("hasAuthority('ROLE_ADMIN')") // Spring Security annotation
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.findAll();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String email,
+                                         @RequestParam(required = false) String lastName) {
+        int pageSize = PageLimits.pageSize(limit);
+        String lastId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                lastId = CursorCodec.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor.");
+            }
+        }
+
+        // Fetch one extra user to learn whether another page exists without a count query.
+        List<User> users = userService.findPage(normalizeEmail(email), emptyToNull(lastName), lastId, pageSize + 1);
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            nextCursor = CursorCodec.encode(users.get(pageSize - 1).getId());
+        }
+        return ResponseEntity.ok(new UserPageDto(users, nextCursor));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @RolesAllowed("ROLE_ADMIN")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(required = false) String email,
+                                                             @RequestParam(required = false) String lastName) {
+        log.info("Request to export users as NDJSON");
+        String emailFilter = normalizeEmail(email);
+        String lastNameFilter = emptyToNull(lastName);
+        // Users are written one at a time straight from the Mongo cursor, so memory use does not
+        // depend on the number of users. The cursor is opened on the async response thread.
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<User> users = userService.streamAll(emailFilter, lastNameFilter)) {
+                writeNdjson(users.iterator(), outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeNdjson(Iterator<User> users, OutputStream outputStream) throws IOException {
+        if (!users.hasNext()) {
+            return;
+        }
+        try (SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+            while (users.hasNext()) {
+                writer.write(users.next());
+            }
+        }
+        outputStream.write('\n'); // The separator only goes between documents; terminate the last line too
+        outputStream.flush();
+    }
+
+    private static boolean isAdmin(Jwt jwt) {
+        List<String> roles = jwt.getClaimAsStringList("roles"); // Get roles claim
+        return roles != null && roles.contains("ROLE_ADMIN");
+    }
+
+    // Keycloak stores emails in lower case, and the filter is an exact (indexed) match.
+    private static String normalizeEmail(String email) {
+        String value = emptyToNull(email);
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
     }
 }
@@ -0,0 +1,16 @@
+package com.mysillydreams.users.dtos;
+
+import com.mysillydreams.users.models.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageDto {
+    private List<User> items;
+    private String nextCursor; // null when there are no more pages
+}
@@ -4,6 +4,8 @@ import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -18,4 +20,5 @@ public class User {
     private String lastName;
     private String email;
     private Address address;
+    private Instant syncedAt; // Last time the Keycloak sync wrote this user; null for users that do not come from Keycloak
 }
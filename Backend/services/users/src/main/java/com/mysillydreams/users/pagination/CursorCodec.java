@@ -0,0 +1,37 @@
+package com.mysillydreams.users.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the last user id of a page into an opaque continuation token.
+ * Clients must treat the token as a black box so the sort key can change later.
+ */
+public final class CursorCodec {
+
+    private static final String PREFIX = "id:";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode(String)}
+     */
+    public static String decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (!raw.startsWith(PREFIX) || raw.length() == PREFIX.length()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return raw.substring(PREFIX.length());
+    }
+}
@@ -0,0 +1,20 @@
+package com.mysillydreams.users.pagination;
+
+/**
+ * Page size bounds for the paginated user listing.
+ */
+public final class PageLimits {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private PageLimits() {
+    }
+
+    /**
+     * @return the requested page size clamped to [1, MAX_PAGE_SIZE], or the default if none was requested
+     */
+    public static int pageSize(Integer requested) {
+        return requested == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(requested, 1), MAX_PAGE_SIZE);
+    }
+}
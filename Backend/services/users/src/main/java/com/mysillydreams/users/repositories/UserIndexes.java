@@ -0,0 +1,51 @@
+package com.mysillydreams.users.repositories;
+
+import com.mysillydreams.users.models.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ensures the indexes behind the user listing filters and the Keycloak sync's cleanup. Each filter
+ * index ends with _id, so a filtered page is an index range scan in cursor order rather than a sort.
+ * Indexes are ensured on a background thread because building one on a large collection takes a while.
+ */
+@Component
+public class UserIndexes {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIndexes.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public UserIndexes(MongoTemplate mongoTemplate,
+                       @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        taskExecutor.execute(() -> {
+            try {
+                ensure(new Index().on("email", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("email_id"));
+                ensure(new Index().on("lastName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("lastName_id"));
+                ensure(new Index().on("syncedAt", Sort.Direction.ASC).named("syncedAt").sparse());
+                log.info("Ensured user indexes");
+            } catch (RuntimeException e) {
+                log.error("Could not create user indexes; filtered listings will scan the collection", e);
+            }
+        });
+    }
+
+    private void ensure(Index index) {
+        mongoTemplate.indexOps(User.class).ensureIndex(index.background());
+    }
+}
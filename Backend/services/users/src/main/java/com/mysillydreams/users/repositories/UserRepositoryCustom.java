@@ -0,0 +1,34 @@
+package com.mysillydreams.users.repositories;
+
+import com.mysillydreams.users.models.User;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Keyset pagination over _id, optionally restricted to an exact email and/or last name.
+     *
+     * @param afterId the last id of the previous page, or null for the first page
+     */
+    List<User> findPage(String email, String lastName, String afterId, int limit);
+
+    /**
+     * Same filters and order as {@link #findPage}, backed by a server-side Mongo cursor; callers must close the stream.
+     */
+    Stream<User> streamMatching(String email, String lastName);
+
+    /**
+     * Inserts or updates the Keycloak-owned fields (names and email) of the given users in one bulk
+     * write, leaving fields maintained by this service (e.g. the address) untouched.
+     */
+    void upsertFromKeycloak(List<User> users, Instant syncedAt);
+
+    /**
+     * @return the ids of users last written by a Keycloak sync before the cutoff; users not sourced from
+     * Keycloak are never listed
+     */
+    List<String> findIdsSyncedBefore(Instant cutoff);
+}
@@ -0,0 +1,73 @@
+package com.mysillydreams.users.repositories;
+
+import com.mysillydreams.users.models.User;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final Sort BY_ID = Sort.by(Sort.Direction.ASC, "id");
+
+    private final MongoTemplate mongoTemplate;
+
+    UserRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<User> findPage(String email, String lastName, String afterId, int limit) {
+        Criteria criteria = matching(email, lastName);
+        if (afterId != null) {
+            criteria.and("id").gt(afterId);
+        }
+        return mongoTemplate.find(new Query(criteria).with(BY_ID).limit(limit), User.class);
+    }
+
+    @Override
+    public Stream<User> streamMatching(String email, String lastName) {
+        return mongoTemplate.stream(new Query(matching(email, lastName)).with(BY_ID), User.class);
+    }
+
+    @Override
+    public void upsertFromKeycloak(List<User> users, Instant syncedAt) {
+        if (users.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        for (User user : users) {
+            bulk.upsert(new Query(Criteria.where("id").is(user.getId())), new Update()
+                    .set("firstName", user.getFirstName())
+                    .set("lastName", user.getLastName())
+                    .set("email", user.getEmail())
+                    .set("syncedAt", syncedAt));
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public List<String> findIdsSyncedBefore(Instant cutoff) {
+        Query query = new Query(Criteria.where("syncedAt").lt(cutoff));
+        query.fields().include("id");
+        return mongoTemplate.find(query, User.class).stream().map(User::getId).toList();
+    }
+
+    // Equality only, so the {field, _id} indexes serve both the filter and the _id order.
+    private static Criteria matching(String email, String lastName) {
+        Criteria criteria = new Criteria();
+        if (email != null) {
+            criteria.and("email").is(email);
+        }
+        if (lastName != null) {
+            criteria.and("lastName").is(lastName);
+        }
+        return criteria;
+    }
+}
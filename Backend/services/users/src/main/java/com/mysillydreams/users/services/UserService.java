@@ -0,0 +1,45 @@
+package com.mysillydreams.users.services;
+
+import com.mysillydreams.users.models.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface UserService {
+
+    /**
+     * @param id the Keycloak subject of the user
+     */
+    Optional<User> findById(String id);
+
+    /**
+     * Looks up several users at once; cached users are served from memory and the rest with one query.
+     *
+     * @return the users found, by id; ids without a user are absent
+     */
+    Map<String, User> findAllById(Collection<String> ids);
+
+    /**
+     * One page of users in id order; email and lastName are optional exact-match filters.
+     *
+     * @param afterId the last id of the previous page, or null for the first page
+     */
+    List<User> findPage(String email, String lastName, String afterId, int limit);
+
+    /**
+     * All users matching the filters, in id order, read from a Mongo cursor. Callers must close the stream.
+     */
+    Stream<User> streamAll(String email, String lastName);
+
+    User save(User user);
+
+    void deleteById(String id);
+
+    /**
+     * Drops any cached copy of the given users after they were written directly to the repository.
+     */
+    void evict(Collection<String> ids);
+}
@@ -0,0 +1,254 @@
+package com.mysillydreams.users.services;
+
+import com.mysillydreams.users.models.User;
+import com.mysillydreams.users.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * {@link UserService} with a read-through cache in front of {@link UserRepository}.
+ * <p>
+ * Profile lookups by id are the most frequent call from the other services, so users are kept in a
+ * bounded in-process cache (least recently used entries are dropped, entries expire after a TTL).
+ * Concurrent misses for the same id share one repository query. Writes through this service evict the
+ * entry; writes made elsewhere (e.g. another replica) become visible once the entry expires.
+ * <p>
+ * Metrics follow Micrometer's cache conventions under {@code cache=users}: {@code cache.gets} tagged
+ * {@code result=hit|miss|coalesced}, {@code cache.evictions} and {@code cache.size}.
+ */
+@Service
+public class UserServiceImpl implements UserService {
+
+    private static final String CACHE_NAME = "users";
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries; // Guarded by lock
+    private long invalidations; // Guarded by lock
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<User>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    public UserServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry,
+                           @Value("${app.users.cache.max-size:10000}") int maxSize,
+                           @Value("${app.users.cache.ttl:PT5M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = getsCounter(meterRegistry, "hit");
+        this.misses = getsCounter(meterRegistry, "miss");
+        this.coalesced = getsCounter(meterRegistry, "coalesced");
+        this.evictions = Counter.builder("cache.evictions").tag("cache", CACHE_NAME)
+                .description("Users dropped from the cache because it was full")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, UserServiceImpl::size).tag("cache", CACHE_NAME)
+                .description("Users currently cached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        User cached = cached(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+
+        CompletableFuture<Optional<User>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<User>> running = inFlight.putIfAbsent(id, load);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+        misses.increment();
+        try {
+            Optional<User> user = userRepository.findById(id);
+            // A write that evicted this id meanwhile also removed the in-flight load; its result is then
+            // already stale and is returned to the waiting callers but not cached. Claiming the load and
+            // storing happen under the lock evict takes, so an eviction cannot fall between the two.
+            lock.lock();
+            try {
+                if (inFlight.remove(id, load)) {
+                    user.ifPresent(u -> entries.put(id, new Entry(u)));
+                }
+            } finally {
+                lock.unlock();
+            }
+            load.complete(user);
+            return user;
+        } catch (RuntimeException e) {
+            inFlight.remove(id, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, User> findAllById(Collection<String> ids) {
+        Map<String, User> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long invalidationsBefore;
+        lock.lock();
+        try {
+            for (String id : ids) {
+                User cached = cachedLocked(id);
+                if (cached != null) {
+                    found.put(id, cached);
+                } else {
+                    missing.add(id);
+                }
+            }
+            invalidationsBefore = invalidations;
+        } finally {
+            lock.unlock();
+        }
+        hits.increment(found.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        misses.increment(missing.size());
+        List<User> loaded = new ArrayList<>(missing.size());
+        userRepository.findAllById(missing).forEach(loaded::add);
+        lock.lock();
+        try {
+            // Any invalidation since the cache was checked may have been for one of these users; the
+            // loaded copies are still returned but only cached when none happened.
+            for (User user : loaded) {
+                found.put(user.getId(), user);
+                if (invalidations == invalidationsBefore) {
+                    entries.put(user.getId(), new Entry(user));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return found;
+    }
+
+    // Listings go straight to the repository; caching pages would not pay off and would hide writes.
+    @Override
+    public List<User> findPage(String email, String lastName, String afterId, int limit) {
+        return userRepository.findPage(email, lastName, afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll(String email, String lastName) {
+        return userRepository.streamMatching(email, lastName);
+    }
+
+    @Override
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        evict(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        userRepository.deleteById(id);
+        evict(id);
+    }
+
+    @Override
+    public void evict(Collection<String> ids) {
+        ids.forEach(this::evict);
+    }
+
+    private void evict(String id) {
+        lock.lock();
+        try {
+            inFlight.remove(id);
+            entries.remove(id);
+            invalidations++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private User cached(String id) {
+        lock.lock();
+        try {
+            return cachedLocked(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private User cachedLocked(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+            entries.remove(id);
+            return null;
+        }
+        return entry.user;
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Optional<User> join(CompletableFuture<Optional<User>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // Waiting callers see the same failure as the caller that ran the query
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter getsCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", result)
+                .description("User lookups by id, by cache outcome")
+                .register(meterRegistry);
+    }
+
+    private static final class Entry {
+        private final User user;
+        private final long loadedAt = System.nanoTime();
+
+        private Entry(User user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.mysillydreams.users.sync;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Document(collection = "sync_state")
+public class KeycloakSyncState {
+
+    @Id
+    private String id; // Realm name
+    private Long eventWatermark; // Epoch millis; Keycloak events from this time on are still to be applied
+    private Instant lastFullSync;
+}
@@ -0,0 +1,8 @@
+package com.mysillydreams.users.sync;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface KeycloakSyncStateRepository extends MongoRepository<KeycloakSyncState, String> {
+}
@@ -0,0 +1,295 @@
+package com.mysillydreams.users.sync;
+
+import com.mysillydreams.users.models.User;
+import com.mysillydreams.users.repositories.UserRepository;
+import com.mysillydreams.users.services.UserService;
+import jakarta.ws.rs.NotFoundException;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.EventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mirrors the realm's users into the users collection, so profile reads never call Keycloak.
+ * <ul>
+ *     <li>A full sync pages through the realm with several pages in flight at once and upserts every
+ *     page with one bulk write. Offset paging can skip users while the realm changes, so users that
+ *     a complete full sync did not see are re-read one by one, and only those Keycloak no longer has
+ *     are removed. It runs on first start and then every {@code app.keycloak.sync.full-interval}.</li>
+ *     <li>In between, an incremental sync reads the admin events (user create/update/delete) and user
+ *     events (registration, profile and email updates, account deletion) since the stored watermark,
+ *     and re-reads only the users they name. It needs admin events and user events enabled for the
+ *     realm; without them, changes show up with the next full sync.</li>
+ * </ul>
+ * Only the Keycloak-owned fields are written. Each run is idempotent, so events are read with some
+ * overlap rather than risk missing one that was stored late.
+ */
+@Service
+@ConditionalOnProperty(name = "app.keycloak.sync.enabled", havingValue = "true")
+public class KeycloakUserSync {
+
+    private static final Logger log = LoggerFactory.getLogger(KeycloakUserSync.class);
+    private static final List<String> ADMIN_OPERATIONS = List.of("CREATE", "UPDATE", "DELETE");
+    private static final List<String> USER_EVENT_TYPES = List.of("REGISTER", "UPDATE_PROFILE", "UPDATE_EMAIL", "DELETE_ACCOUNT");
+    private static final String USERS_PATH_PREFIX = "users/";
+
+    private final Keycloak keycloak;
+    private final UserRepository userRepository;
+    private final KeycloakSyncStateRepository syncStateRepository;
+    private final UserService userService;
+    private final String realm;
+    private final int pageSize;
+    private final int parallelism;
+    private final Duration fullSyncInterval;
+    private final long eventOverlapMillis;
+    private final ReentrantLock running = new ReentrantLock();
+
+    public KeycloakUserSync(Keycloak keycloak, UserRepository userRepository,
+                            KeycloakSyncStateRepository syncStateRepository, UserService userService,
+                            @Value("${app.keycloak.realm}") String realm,
+                            @Value("${app.keycloak.sync.page-size:500}") int pageSize,
+                            @Value("${app.keycloak.sync.parallelism:4}") int parallelism,
+                            @Value("${app.keycloak.sync.full-interval:P1D}") Duration fullSyncInterval,
+                            @Value("${app.keycloak.sync.event-overlap:PT30S}") Duration eventOverlap) {
+        this.keycloak = keycloak;
+        this.userRepository = userRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.userService = userService;
+        this.realm = realm;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.fullSyncInterval = fullSyncInterval;
+        this.eventOverlapMillis = eventOverlap.toMillis();
+    }
+
+    @Scheduled(initialDelayString = "${app.keycloak.sync.initial-delay:PT10S}",
+               fixedDelayString = "${app.keycloak.sync.interval:PT1M}")
+    public void scheduledSync() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            // The next run starts from the same watermark
+            log.warn("Keycloak user sync for realm {} failed", realm, e);
+        }
+    }
+
+    /**
+     * Runs a full sync if one is due, otherwise an incremental one. Does nothing if a sync is already running.
+     */
+    public void sync() {
+        if (!running.tryLock()) {
+            return;
+        }
+        try {
+            KeycloakSyncState state = syncStateRepository.findById(realm)
+                    .orElseGet(() -> new KeycloakSyncState(realm, null, null));
+            Instant now = Instant.now();
+            if (state.getLastFullSync() == null || state.getEventWatermark() == null
+                    || state.getLastFullSync().plus(fullSyncInterval).isBefore(now)) {
+                fullSync(state);
+            } else {
+                incrementalSync(state);
+            }
+        } finally {
+            running.unlock();
+        }
+    }
+
+    /**
+     * @return the number of users written
+     */
+    public int fullSync(KeycloakSyncState state) {
+        Instant start = Instant.now();
+        RealmResource realmResource = keycloak.realm(realm);
+        AtomicInteger nextPage = new AtomicInteger();
+        AtomicBoolean lastPageSeen = new AtomicBoolean();
+        AtomicLong written = new AtomicLong();
+
+        // Each worker claims the next page until one comes back short; pages are upserted as they arrive.
+        List<Future<?>> workers = new ArrayList<>(parallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(executor.submit(() -> {
+                    while (!lastPageSeen.get()) {
+                        int page = nextPage.getAndIncrement();
+                        List<UserRepresentation> users = realmResource.users()
+                                .search(null, page * pageSize, pageSize, true);
+                        if (users.size() < pageSize) {
+                            lastPageSeen.set(true);
+                        }
+                        written.addAndGet(write(users, start));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Full Keycloak user sync interrupted", e);
+        } catch (ExecutionException e) {
+            // Nothing is removed after an incomplete pass, and the watermark stays where it was.
+            throw new IllegalStateException("Full Keycloak user sync of realm " + realm + " failed", e.getCause());
+        }
+
+        List<String> unseen = userRepository.findIdsSyncedBefore(start);
+        int removed = unseen.isEmpty() ? 0 : applyChanges(realmResource, unseen);
+        state.setLastFullSync(start);
+        state.setEventWatermark(start.toEpochMilli() - eventOverlapMillis);
+        syncStateRepository.save(state);
+        log.info("Full Keycloak user sync of realm {}: {} users written, {} removed in {} ms",
+                realm, written.get(), removed, Duration.between(start, Instant.now()).toMillis());
+        return (int) written.get();
+    }
+
+    /**
+     * @return the number of users re-read from Keycloak
+     */
+    public int incrementalSync(KeycloakSyncState state) {
+        long from = state.getEventWatermark();
+        long to = System.currentTimeMillis();
+        RealmResource realmResource = keycloak.realm(realm);
+
+        Set<String> changedIds = new LinkedHashSet<>();
+        String dateFrom = Long.toString(from);
+        String dateTo = Long.toString(to);
+        // The window is fixed, so paging is stable while new events are being recorded.
+        for (int first = 0; ; first += pageSize) {
+            List<AdminEventRepresentation> events = realmResource.getAdminEvents(ADMIN_OPERATIONS, null, null, null,
+                    null, null, List.of("USER"), dateFrom, dateTo, first, pageSize);
+            for (AdminEventRepresentation event : events) {
+                String userId = userIdOf(event.getResourcePath());
+                if (userId != null) {
+                    changedIds.add(userId);
+                }
+            }
+            if (events.size() < pageSize) {
+                break;
+            }
+        }
+        for (int first = 0; ; first += pageSize) {
+            List<EventRepresentation> events = realmResource.getEvents(USER_EVENT_TYPES, null, null, dateFrom, dateTo,
+                    null, first, pageSize);
+            for (EventRepresentation event : events) {
+                if (event.getUserId() != null) {
+                    changedIds.add(event.getUserId());
+                }
+            }
+            if (events.size() < pageSize) {
+                break;
+            }
+        }
+
+        if (!changedIds.isEmpty()) {
+            applyChanges(realmResource, changedIds);
+        }
+        state.setEventWatermark(Math.max(from, to - eventOverlapMillis));
+        syncStateRepository.save(state);
+        if (!changedIds.isEmpty()) {
+            log.info("Incremental Keycloak user sync of realm {}: {} users changed", realm, changedIds.size());
+        }
+        return changedIds.size();
+    }
+
+    // Re-reads the changed users, a bounded number at a time, and applies them in one bulk write.
+    // Returns the number of users removed because Keycloak no longer has them.
+    private int applyChanges(RealmResource realmResource, Collection<String> changedIds) {
+        Instant syncedAt = Instant.now();
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<UserRepresentation>> lookups = new ArrayList<>(changedIds.size());
+        List<String> ids = new ArrayList<>(changedIds);
+        List<User> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String id : ids) {
+                lookups.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return realmResource.users().get(id).toRepresentation();
+                    } catch (NotFoundException e) {
+                        return null; // Deleted from the realm
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                UserRepresentation representation = lookups.get(i).get();
+                if (representation == null) {
+                    deletes.add(ids.get(i));
+                } else {
+                    upserts.add(toUser(representation));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Keycloak user sync interrupted while re-reading users", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Re-reading users of realm " + realm + " from Keycloak failed", e.getCause());
+        }
+
+        userRepository.upsertFromKeycloak(upserts, syncedAt);
+        if (!deletes.isEmpty()) {
+            userRepository.deleteAllById(deletes);
+        }
+        userService.evict(changedIds);
+        return deletes.size();
+    }
+
+    private int write(List<UserRepresentation> representations, Instant syncedAt) {
+        List<User> users = new ArrayList<>(representations.size());
+        List<String> ids = new ArrayList<>(representations.size());
+        for (UserRepresentation representation : representations) {
+            users.add(toUser(representation));
+            ids.add(representation.getId());
+        }
+        userRepository.upsertFromKeycloak(users, syncedAt);
+        userService.evict(ids);
+        return users.size();
+    }
+
+    private static User toUser(UserRepresentation representation) {
+        return User.builder()
+                .id(representation.getId())
+                .firstName(representation.getFirstName())
+                .lastName(representation.getLastName())
+                .email(representation.getEmail())
+                .build();
+    }
+
+    // Admin event paths look like users/{id} or users/{id}/<sub-resource>
+    private static String userIdOf(String resourcePath) {
+        if (resourcePath == null || !resourcePath.startsWith(USERS_PATH_PREFIX)) {
+            return null;
+        }
+        int end = resourcePath.indexOf('/', USERS_PATH_PREFIX.length());
+        String id = end < 0 ? resourcePath.substring(USERS_PATH_PREFIX.length())
+                : resourcePath.substring(USERS_PATH_PREFIX.length(), end);
+        return id.isEmpty() ? null : id;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mysillydreams.users.services;
+
+import com.mysillydreams.users.models.User;
+import com.mysillydreams.users.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceImplTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserServiceImpl(userRepository, meterRegistry, 2, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void servesRepeatedLookupsFromCache() {
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1")));
+
+        assertThat(userService.findById("u1")).isPresent();
+        assertThat(userService.findById("u1")).isPresent();
+
+        verify(userRepository, times(1)).findById("u1");
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotCacheMissingUsers() {
+        when(userRepository.findById("u1")).thenReturn(Optional.empty());
+
+        assertThat(userService.findById("u1")).isEmpty();
+        assertThat(userService.findById("u1")).isEmpty();
+
+        verify(userRepository, times(2)).findById("u1");
+    }
+
+    @Test
+    void writesEvictTheCachedUser() {
+        User saved = user("u1");
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1")));
+        when(userRepository.save(any(User.class))).thenReturn(saved);
+
+        userService.findById("u1");
+        userService.save(saved);
+        userService.findById("u1");
+        userService.deleteById("u1");
+        userService.findById("u1");
+
+        verify(userRepository, times(3)).findById("u1");
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedUsersBeyondMaxSize() {
+        for (String id : List.of("u1", "u2", "u3")) {
+            when(userRepository.findById(id)).thenReturn(Optional.of(user(id)));
+        }
+
+        userService.findById("u1");
+        userService.findById("u2");
+        userService.findById("u1");
+        userService.findById("u3"); // Evicts u2
+        userService.findById("u1");
+        userService.findById("u2");
+
+        verify(userRepository, times(1)).findById("u1");
+        verify(userRepository, times(2)).findById("u2");
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        userService = new UserServiceImpl(userRepository, meterRegistry, 10, Duration.ofMillis(1));
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1")));
+
+        userService.findById("u1");
+        Thread.sleep(5);
+        userService.findById("u1");
+
+        verify(userRepository, times(2)).findById("u1");
+    }
+
+    @Test
+    void coalescesConcurrentMissesIntoOneQuery() throws Exception {
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(userRepository.findById("u1")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            releaseQuery.await(5, TimeUnit.SECONDS);
+            return Optional.of(user("u1"));
+        });
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<User>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> userService.findById("u1")));
+            assertThat(queryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> userService.findById("u1")));
+            }
+            awaitCoalesced(callers - 1);
+            releaseQuery.countDown();
+
+            for (Future<Optional<User>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isPresent();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(userRepository, times(1)).findById("u1");
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(gets("coalesced")).isEqualTo(callers - 1);
+    }
+
+    @Test
+    void coalescedCallersSeeTheQueryFailure() throws Exception {
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch releaseQuery = new CountDownLatch(1);
+        when(userRepository.findById("u1")).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            releaseQuery.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("mongo down");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<User>> first = executor.submit(() -> userService.findById("u1"));
+            assertThat(queryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Optional<User>> second = executor.submit(() -> userService.findById("u1"));
+            awaitCoalesced(1);
+            releaseQuery.countDown();
+
+            for (Future<Optional<User>> result : List.of(first, second)) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("mongo down");
+                    continue;
+                }
+                throw new AssertionError("Expected the lookup to fail");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void batchLookupServesCachedUsersAndQueriesTheRestOnce() {
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1")));
+        when(userRepository.findAllById(List.of("u2", "u3"))).thenReturn(List.of(user("u2")));
+        userService = new UserServiceImpl(userRepository, meterRegistry, 10, Duration.ofMinutes(5));
+        userService.findById("u1");
+
+        Map<String, User> found = userService.findAllById(List.of("u1", "u2", "u3"));
+
+        assertThat(found).containsOnlyKeys("u1", "u2");
+        verify(userRepository, times(1)).findAllById(List.of("u2", "u3"));
+        assertThat(userService.findById("u2")).isPresent(); // Cached by the batch
+        verify(userRepository, never()).findById("u2");
+    }
+
+    @Test
+    void batchLookupDoesNotCacheUsersInvalidatedDuringTheQuery() {
+        when(userRepository.findAllById(List.of("u1"))).thenAnswer(invocation -> {
+            userService.evict(List.of("u1")); // A write lands while the query runs
+            return List.of(user("u1"));
+        });
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user("u1")));
+
+        assertThat(userService.findAllById(List.of("u1"))).containsOnlyKeys("u1");
+        userService.findById("u1");
+
+        verify(userRepository, times(1)).findById("u1");
+    }
+
+    @Test
+    void lookupDoesNotCacheUserInvalidatedDuringTheQuery() {
+        when(userRepository.findById("u1")).thenAnswer(invocation -> {
+            userService.evict(List.of("u1")); // A write lands while the query runs
+            return Optional.of(user("u1"));
+        }).thenReturn(Optional.of(user("u1")));
+
+        assertThat(userService.findById("u1")).isPresent();
+        assertThat(userService.findById("u1")).isPresent();
+
+        verify(userRepository, times(2)).findById("u1");
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gets("coalesced") < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+
+    private static User user(String id) {
+        return User.builder().id(id).firstName("First").lastName("Last").email(id + "@example.com").build();
+    }
+}
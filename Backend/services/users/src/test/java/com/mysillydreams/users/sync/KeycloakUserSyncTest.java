@@ -0,0 +1,305 @@
+package com.mysillydreams.users.sync;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.users.models.User;
+import com.mysillydreams.users.repositories.UserRepository;
+import com.mysillydreams.users.services.UserService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.EventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the sync against a local stub of the Keycloak admin REST API.
+ */
+class KeycloakUserSyncTest {
+
+    private static final String REALM = "test";
+    private static final String ADMIN_PATH = "/admin/realms/" + REALM;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<UserRepresentation> realmUsers = new ArrayList<>();
+    private final List<AdminEventRepresentation> adminEvents = new ArrayList<>();
+    private final List<EventRepresentation> userEvents = new ArrayList<>();
+    private final List<Map<String, String>> eventQueries = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pageRequests = new AtomicInteger();
+    private final AtomicInteger concurrentPages = new AtomicInteger();
+    private final AtomicInteger maxConcurrentPages = new AtomicInteger();
+    private volatile int failingPageOffset = -1;
+
+    private final Map<String, User> store = new ConcurrentHashMap<>();
+    private final List<String> deleted = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Keycloak keycloak;
+    private UserRepository userRepository;
+    private KeycloakSyncStateRepository syncStateRepository;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.createContext(ADMIN_PATH + "/users", this::handleUsers);
+        server.createContext(ADMIN_PATH + "/admin-events", exchange -> {
+            eventQueries.add(query(exchange));
+            respond(exchange, 200, slice(adminEvents, query(exchange)));
+        });
+        server.createContext(ADMIN_PATH + "/events", exchange -> respond(exchange, 200, slice(userEvents, query(exchange))));
+        server.start();
+
+        keycloak = KeycloakBuilder.builder()
+                .serverUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .realm("master")
+                .clientId("admin-cli")
+                .authorization("Bearer test-token")
+                .build();
+
+        userRepository = mock(UserRepository.class);
+        doAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.forEach(user -> store.put(user.getId(), user));
+            return null;
+        }).when(userRepository).upsertFromKeycloak(anyList(), any(Instant.class));
+        doAnswer(invocation -> {
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(deleted::add);
+            return null;
+        }).when(userRepository).deleteAllById(any());
+        syncStateRepository = mock(KeycloakSyncStateRepository.class);
+        when(syncStateRepository.findById(REALM)).thenReturn(Optional.empty());
+        userService = mock(UserService.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void fullSyncPagesThroughTheRealmInParallel() {
+        for (int i = 0; i < 1234; i++) {
+            realmUsers.add(user("u" + i, "Last" + i));
+        }
+        KeycloakSyncState state = new KeycloakSyncState(REALM, null, null);
+
+        int written = newSync(100, 4).fullSync(state);
+
+        assertThat(written).isEqualTo(1234);
+        assertThat(store).hasSize(1234);
+        assertThat(store.get("u1233").getLastName()).isEqualTo("Last1233");
+        assertThat(maxConcurrentPages.get()).isGreaterThan(1);
+        assertThat(pageRequests.get()).isLessThanOrEqualTo(13 + 4); // At most one extra page per worker past the end
+        verify(userRepository).findIdsSyncedBefore(state.getLastFullSync());
+        assertThat(deleted).isEmpty();
+        verify(syncStateRepository).save(state);
+        assertThat(state.getEventWatermark()).isNotNull();
+    }
+
+    @Test
+    void failedPageKeepsUsersAndWatermark() {
+        for (int i = 0; i < 500; i++) {
+            realmUsers.add(user("u" + i, "Last" + i));
+        }
+        failingPageOffset = 300;
+        KeycloakSyncState state = new KeycloakSyncState(REALM, 42L, null);
+
+        assertThatThrownBy(() -> newSync(100, 2).fullSync(state)).isInstanceOf(IllegalStateException.class);
+
+        verify(userRepository, never()).findIdsSyncedBefore(any());
+        assertThat(deleted).isEmpty();
+        verify(syncStateRepository, never()).save(any());
+        assertThat(state.getEventWatermark()).isEqualTo(42L);
+    }
+
+    @Test
+    void fullSyncRemovesOnlyUnseenUsersThatKeycloakNoLongerHas() {
+        for (int i = 0; i < 10; i++) {
+            realmUsers.add(user("u" + i, "Last" + i));
+        }
+        // As if paging had skipped u5 while users were deleted from earlier pages
+        when(userRepository.findIdsSyncedBefore(any())).thenReturn(List.of("u5", "gone"));
+        KeycloakSyncState state = new KeycloakSyncState(REALM, null, null);
+
+        newSync(100, 2).fullSync(state);
+
+        assertThat(deleted).containsExactly("gone");
+        assertThat(store).containsKey("u5");
+        verify(userService).evict(argThat(ids -> ids.contains("gone")));
+        verify(syncStateRepository).save(state);
+    }
+
+    @Test
+    void incrementalSyncReReadsOnlyUsersNamedByEvents() {
+        realmUsers.add(user("u1", "Updated"));
+        realmUsers.add(user("u3", "Created"));
+        realmUsers.add(user("u4", "Registered"));
+        adminEvents.add(adminEvent("UPDATE", "users/u1"));
+        adminEvents.add(adminEvent("DELETE", "users/u2"));
+        adminEvents.add(adminEvent("CREATE", "users/u3/role-mappings/realm"));
+        userEvents.add(userEvent("REGISTER", "u4"));
+        long watermark = System.currentTimeMillis() - 60_000;
+        KeycloakSyncState state = new KeycloakSyncState(REALM, watermark, Instant.now());
+
+        int changed = newSync(100, 2).incrementalSync(state);
+
+        assertThat(changed).isEqualTo(4);
+        assertThat(store.keySet()).containsExactlyInAnyOrder("u1", "u3", "u4");
+        assertThat(store.get("u1").getLastName()).isEqualTo("Updated");
+        assertThat(deleted).containsExactly("u2");
+        assertThat(pageRequests.get()).isZero();
+        assertThat(eventQueries.get(0)).containsEntry("dateFrom", Long.toString(watermark))
+                .containsEntry("resourceTypes", "USER");
+        assertThat(state.getEventWatermark()).isGreaterThan(watermark);
+        verify(syncStateRepository).save(state);
+        verify(userService).evict(any());
+    }
+
+    @Test
+    void syncRunsFullSyncFirstAndIncrementalAfterwards() {
+        realmUsers.add(user("u1", "Last"));
+        KeycloakUserSync sync = newSync(100, 2);
+
+        sync.sync();
+        assertThat(pageRequests.get()).isPositive();
+
+        KeycloakSyncState saved = new KeycloakSyncState(REALM, System.currentTimeMillis(), Instant.now());
+        when(syncStateRepository.findById(REALM)).thenReturn(Optional.of(saved));
+        int pagesAfterFullSync = pageRequests.get();
+        sync.sync();
+
+        assertThat(pageRequests.get()).isEqualTo(pagesAfterFullSync);
+        assertThat(eventQueries).hasSize(1);
+    }
+
+    private KeycloakUserSync newSync(int pageSize, int parallelism) {
+        return new KeycloakUserSync(keycloak, userRepository, syncStateRepository, userService, REALM,
+                pageSize, parallelism, Duration.ofDays(1), Duration.ofSeconds(30));
+    }
+
+    private void handleUsers(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.length() > (ADMIN_PATH + "/users/").length()) {
+            String id = path.substring((ADMIN_PATH + "/users/").length());
+            Optional<UserRepresentation> user = realmUsers.stream().filter(u -> u.getId().equals(id)).findFirst();
+            if (user.isPresent()) {
+                respond(exchange, 200, user.get());
+            } else {
+                respond(exchange, 404, Map.of("error", "User not found"));
+            }
+            return;
+        }
+
+        pageRequests.incrementAndGet();
+        int inFlight = concurrentPages.incrementAndGet();
+        maxConcurrentPages.accumulateAndGet(inFlight, Math::max);
+        try {
+            Thread.sleep(20); // Long enough for the workers' requests to overlap
+            Map<String, String> query = query(exchange);
+            if (Integer.parseInt(query.getOrDefault("first", "0")) == failingPageOffset) {
+                respond(exchange, 500, Map.of("error", "unavailable"));
+                return;
+            }
+            respond(exchange, 200, slice(realmUsers, query));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrentPages.decrementAndGet();
+        }
+    }
+
+    private static <T> List<T> slice(List<T> items, Map<String, String> query) {
+        int first = Integer.parseInt(query.getOrDefault("first", "0"));
+        int max = Integer.parseInt(query.getOrDefault("max", "100"));
+        return items.subList(Math.min(first, items.size()), Math.min(first + max, items.size()));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static UserRepresentation user(String id, String lastName) {
+        UserRepresentation user = new UserRepresentation();
+        user.setId(id);
+        user.setUsername(id);
+        user.setFirstName("First");
+        user.setLastName(lastName);
+        user.setEmail(id + "@example.com");
+        return user;
+    }
+
+    private static AdminEventRepresentation adminEvent(String operation, String resourcePath) {
+        AdminEventRepresentation event = new AdminEventRepresentation();
+        event.setTime(System.currentTimeMillis());
+        event.setOperationType(operation);
+        event.setResourceType("USER");
+        event.setResourcePath(resourcePath);
+        return event;
+    }
+
+    private static EventRepresentation userEvent(String type, String userId) {
+        EventRepresentation event = new EventRepresentation();
+        event.setTime(System.currentTimeMillis());
+        event.setType(type);
+        event.setUserId(userId);
+        return event;
+    }
+}
@@ -0,0 +1,77 @@
+package com.mysillydreams.keycloak.authenticator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codes per second from the shared {@link OtpGenerator} at 1, 8 and 32 threads, against the previous
+ * approach of drawing each digit from one shared SecureRandom. The gap only shows with several cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OtpGeneratorBenchmark {
+
+    private static final int LENGTH = 6;
+
+    private final OtpGenerator generator = new OtpGenerator();
+    private final SecureRandom sharedRandom = new SecureRandom();
+
+    @Benchmark
+    @Threads(1)
+    public String generate1() {
+        return generator.generate(LENGTH);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generate8() {
+        return generator.generate(LENGTH);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String generate32() {
+        return generator.generate(LENGTH);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String sharedRandomPerDigit1() {
+        return sharedRandomPerDigit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String sharedRandomPerDigit8() {
+        return sharedRandomPerDigit();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String sharedRandomPerDigit32() {
+        return sharedRandomPerDigit();
+    }
+
+    private String sharedRandomPerDigit() {
+        StringBuilder code = new StringBuilder(LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            code.append(sharedRandom.nextInt(10));
+        }
+        return code.toString();
+    }
+}
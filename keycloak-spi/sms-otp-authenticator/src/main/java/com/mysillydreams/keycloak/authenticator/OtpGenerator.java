@@ -0,0 +1,75 @@
+package com.mysillydreams.keycloak.authenticator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Generates and checks numeric OTP codes for the shared authenticator instance.
+ * <p>
+ * Codes come from a fixed set of independent DRBG instances picked by thread, so concurrent logins
+ * rarely contend on one generator. (The default NativePRNG would not help here: all its instances read
+ * through one shared, synchronized source.) A code is a single uniform draw below 10^length, written
+ * out as zero-padded digits.
+ */
+public class OtpGenerator {
+
+    static final int MAX_LENGTH = 18; // 10^18 still fits in a long
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_LENGTH + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_LENGTH; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final SecureRandom[] randoms;
+    private final int mask;
+
+    public OtpGenerator() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        this.randoms = new SecureRandom[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++) {
+            randoms[i] = newRandom();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length is not between 1 and 18
+     */
+    public String generate(int length) {
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("OTP length must be between 1 and " + MAX_LENGTH + ": " + length);
+        }
+        long id = Thread.currentThread().getId();
+        long value = randoms[(int) (id ^ (id >>> 32)) & mask].nextLong(POWERS_OF_TEN[length]);
+        char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Compares codes in time that does not depend on where they differ.
+     */
+    public static boolean matches(String expected, String entered) {
+        if (expected == null || entered == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), entered.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -1,19 +1,22 @@
 package com.mysillydreams.keycloak.authenticator;
 
 import org.jboss.logging.Logger;
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics;
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics.SendOutcome;
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics.VerificationOutcome;
+import com.mysillydreams.keycloak.authenticator.ratelimit.OtpRateLimiter;
+import com.mysillydreams.keycloak.authenticator.sms.DeliveryStatus;
+import com.mysillydreams.keycloak.authenticator.sms.SmsDispatcher;
+import com.mysillydreams.keycloak.authenticator.sms.SmsMessage;
 import org.keycloak.authentication.AuthenticationFlowContext;
 import org.keycloak.authentication.AuthenticationFlowError;
 import org.keycloak.authentication.Authenticator;
 import org.keycloak.forms.login.LoginFormsProvider;
 import org.keycloak.models.*;
+import org.keycloak.sessions.AuthenticationSessionModel;
 
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.security.SecureRandom;
 import java.time.Instant;
 
 public class SmsOtpAuthenticator implements Authenticator {
@@ -25,13 +28,19 @@ public class SmsOtpAuthenticator implements Authenticator {
     private static final String AUTH_NOTE_OTP_CODE = "smsOtpCode";
     private static final String AUTH_NOTE_OTP_EXPIRY = "smsOtpExpiry";
     private static final String AUTH_NOTE_MOBILE_NUMBER = "smsOtpMobileNumber";
-
-    private final SecureRandom random = new SecureRandom();
-
-    // Consider making HttpClient a shared instance or injected if this class is not a singleton
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
-            .build();
+    private static final String AUTH_NOTE_SMS_MESSAGE_ID = "smsOtpMessageId";
+    private static final String AUTH_NOTE_OTP_SENT_AT = "smsOtpSentAt";
+
+    private final OtpGenerator otpGenerator = new OtpGenerator();
+    private final SmsDispatcher smsDispatcher;
+    private final OtpRateLimiter rateLimiter;
+    private final OtpMetrics metrics;
+
+    public SmsOtpAuthenticator(SmsDispatcher smsDispatcher, OtpRateLimiter rateLimiter, OtpMetrics metrics) {
+        this.smsDispatcher = smsDispatcher;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
 
     @Override
     public void authenticate(AuthenticationFlowContext context) {
@@ -58,19 +67,33 @@ public class SmsOtpAuthenticator implements Authenticator {
             context.challenge(challenge);
             return;
         }
+        // Reloading the form sends a new code, so sends are limited before any session or SMS work.
+        if (!rateLimiter.allowSend(configModel.getConfig(), mobileNumber, user.getId(), context.getConnection().getRemoteAddr())) {
+            logger.warnf("OTP send rate limit reached for user %s.", user.getUsername());
+            metrics.recordSend(SendOutcome.RATE_LIMITED);
+            Response challenge = context.form()
+                .setError("smsOtpTooManyRequests")
+                .createForm(TPL_OTP_FORM);
+            context.challenge(challenge); // A code sent earlier can still be entered
+            return;
+        }
         context.getAuthenticationSession().setAuthNote(AUTH_NOTE_MOBILE_NUMBER, mobileNumber);
 
         // Step 2: Generate and send OTP
         int otpLength = Integer.parseInt(configModel.getConfig().getOrDefault(SmsOtpAuthenticatorFactory.CONFIG_OTP_LENGTH, "6"));
         long otpTtlSeconds = Long.parseLong(configModel.getConfig().getOrDefault(SmsOtpAuthenticatorFactory.CONFIG_OTP_TTL_SECONDS, "300"));
 
-        String otp = generateOtp(otpLength);
+        long generationStart = System.nanoTime();
+        String otp = otpGenerator.generate(otpLength);
+        metrics.recordGeneration(System.nanoTime() - generationStart);
         Instant expiry = Instant.now().plusSeconds(otpTtlSeconds);
 
         context.getAuthenticationSession().setAuthNote(AUTH_NOTE_OTP_CODE, otp);
         context.getAuthenticationSession().setAuthNote(AUTH_NOTE_OTP_EXPIRY, String.valueOf(expiry.toEpochMilli()));
 
-        boolean smsSent = sendOtpViaSmsService(context, mobileNumber, otp);
+        // Delivery runs in the background; the form is shown without waiting for the SMS service.
+        boolean smsSent = sendOtpViaSmsService(context, mobileNumber, otp, expiry);
+        metrics.recordSend(smsSent ? SendOutcome.QUEUED : SendOutcome.FAILED);
 
         if (!smsSent) {
             logger.errorf("Failed to send OTP SMS to user %s on number %s", user.getUsername(), mobileNumber);
@@ -88,55 +111,55 @@ public class SmsOtpAuthenticator implements Authenticator {
         context.challenge(challenge);
     }
 
-    private String generateOtp(int length) {
-        StringBuilder otp = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            otp.append(random.nextInt(10));
-        }
-        return otp.toString();
-    }
-
-    private boolean sendOtpViaSmsService(AuthenticationFlowContext context, String mobileNumber, String otp) {
+    /**
+     * @return false if the send was rejected outright (not configured, outbox full)
+     */
+    private boolean sendOtpViaSmsService(AuthenticationFlowContext context, String mobileNumber, String otp, Instant expiry) {
         AuthenticatorConfigModel configModel = context.getAuthenticatorConfig();
         String smsServiceUrl = configModel.getConfig().get(SmsOtpAuthenticatorFactory.CONFIG_SMS_SERVICE_URL);
+        String providers = configModel.getConfig().get(SmsOtpAuthenticatorFactory.CONFIG_SMS_PROVIDERS);
         UserModel user = context.getUser();
 
-        if (smsServiceUrl == null || smsServiceUrl.trim().isEmpty()) {
-            logger.error("SMS Service URL is not configured.");
+        if (providers != null && providers.trim().isEmpty()) {
+            providers = null;
+        }
+        if (providers == null && (smsServiceUrl == null || smsServiceUrl.trim().isEmpty())) {
+            logger.error("Neither SMS Providers nor the SMS Service URL is configured.");
             return false;
         }
 
-        String message = "Your OTP for " + context.getRealm().getDisplayName() + " is: " + otp;
-        // In a real SMS service, you'd likely send JSON
-        String requestBody = String.format("{\"mobileNumber\": \"%s\", \"message\": \"%s\"}", mobileNumber, message);
-
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(smsServiceUrl)) // Assuming smsServiceUrl is the full endpoint path
-                    .header("Content-Type", "application/json") // Or whatever your sms-service expects
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                    .build();
-
-            logger.infof("Sending OTP request to SMS service for user %s at URL %s", user.getUsername(), smsServiceUrl);
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                logger.infof("Successfully sent OTP to user %s via SMS service. Response: %s", user.getUsername(), response.body());
-                return true;
-            } else {
-                logger.errorf("Failed to send OTP via SMS service for user %s. Status: %d, Response: %s",
-                        user.getUsername(), response.statusCode(), response.body());
-                return false;
-            }
-        } catch (Exception e) {
-            logger.errorf(e, "Exception while sending OTP via SMS service for user %s.", user.getUsername());
-            return false;
+        String bulkServiceUrl = configModel.getConfig().get(SmsOtpAuthenticatorFactory.CONFIG_SMS_SERVICE_BULK_URL);
+        if (bulkServiceUrl != null && bulkServiceUrl.trim().isEmpty()) {
+            bulkServiceUrl = null;
         }
-    }
 
+        AuthenticationSessionModel authSession = context.getAuthenticationSession();
+        String sessionKey = authSession.getParentSession().getId() + "/" + authSession.getTabId();
+        String message = "Your OTP for " + context.getRealm().getDisplayName() + " is: " + otp;
+        SmsMessage smsMessage = new SmsMessage(sessionKey, mobileNumber, message, smsServiceUrl, bulkServiceUrl, providers,
+                expiry);
+        authSession.setAuthNote(AUTH_NOTE_SMS_MESSAGE_ID, smsMessage.getId());
+        authSession.setAuthNote(AUTH_NOTE_OTP_SENT_AT, String.valueOf(System.currentTimeMillis()));
+
+        logger.infof("Sending OTP request to SMS service for user %s via %s", user.getUsername(),
+                providers == null ? smsServiceUrl : "the configured SMS providers");
+        return smsDispatcher.dispatch(smsMessage) != DeliveryStatus.FAILED;
+    }
 
     @Override
     public void action(AuthenticationFlowContext context) {
+        // Checked before the form or the session is read; a rejected guess costs no session work.
+        if (!rateLimiter.allowVerification(context.getAuthenticatorConfig().getConfig(), context.getUser().getId(),
+                context.getConnection().getRemoteAddr())) {
+            logger.warnf("OTP verification rate limit reached for user %s.", context.getUser().getUsername());
+            metrics.recordVerification(VerificationOutcome.RATE_LIMITED);
+            Response challenge = context.form()
+                    .setError("smsOtpTooManyAttempts")
+                    .createForm(TPL_OTP_FORM);
+            context.challenge(challenge);
+            return;
+        }
+
         MultivaluedMap<String, String> formData = context.getHttpRequest().getDecodedFormParameters();
         String enteredOtp = formData.getFirst("otp_code");
 
@@ -146,6 +169,7 @@ public class SmsOtpAuthenticator implements Authenticator {
 
         if (storedOtp == null || otpExpiryMillisStr == null) {
             logger.warn("OTP not found in session or expired. Possible tampering or session issue.");
+            metrics.recordVerification(VerificationOutcome.NO_OTP);
             Response challenge = context.form()
                     .setError("smsOtpNoOtpInSession")
                     .createForm(TPL_OTP_FORM);
@@ -157,6 +181,7 @@ public class SmsOtpAuthenticator implements Authenticator {
 
         if (Instant.now().isAfter(otpExpiry)) {
             logger.warnf("OTP for user %s has expired.", context.getUser().getUsername());
+            metrics.recordVerification(VerificationOutcome.EXPIRED);
             Response challenge = context.form()
                     .setError("smsOtpExpired")
                     .createForm(TPL_OTP_FORM);
@@ -164,15 +189,32 @@ public class SmsOtpAuthenticator implements Authenticator {
             return;
         }
 
-        if (storedOtp.equals(enteredOtp)) {
+        if (OtpGenerator.matches(storedOtp, enteredOtp)) {
             logger.infof("User %s successfully authenticated with SMS OTP.", context.getUser().getUsername());
+            metrics.recordVerification(VerificationOutcome.SUCCESS);
+            String sentAt = authSession.getAuthNote(AUTH_NOTE_OTP_SENT_AT);
+            if (sentAt != null) {
+                metrics.recordTimeToEnter(System.currentTimeMillis() - Long.parseLong(sentAt));
+            }
             // Clear auth notes after successful validation
             authSession.removeAuthNote(AUTH_NOTE_OTP_CODE);
             authSession.removeAuthNote(AUTH_NOTE_OTP_EXPIRY);
             authSession.removeAuthNote(AUTH_NOTE_MOBILE_NUMBER);
+            authSession.removeAuthNote(AUTH_NOTE_SMS_MESSAGE_ID);
+            authSession.removeAuthNote(AUTH_NOTE_OTP_SENT_AT);
             context.success();
+        } else if (smsDeliveryFailed(authSession)) {
+            // The code never reached the user; say so rather than reporting a wrong code.
+            logger.warnf("OTP SMS for user %s could not be delivered.", context.getUser().getUsername());
+            metrics.recordVerification(VerificationOutcome.DELIVERY_FAILED);
+            Response challenge = context.form()
+                    .setError("smsOtpSendFailed")
+                    .setUser(context.getUser())
+                    .createForm(TPL_OTP_FORM);
+            context.failureChallenge(AuthenticationFlowError.INTERNAL_ERROR, challenge);
         } else {
             logger.warnf("Invalid OTP entered by user %s.", context.getUser().getUsername());
+            metrics.recordVerification(VerificationOutcome.INVALID);
             Response challenge = context.form()
                     .setError("smsOtpInvalid")
                     .setUser(context.getUser()) // Keep user context for the form
@@ -181,6 +223,11 @@ public class SmsOtpAuthenticator implements Authenticator {
         }
     }
 
+    private boolean smsDeliveryFailed(AuthenticationSessionModel authSession) {
+        String messageId = authSession.getAuthNote(AUTH_NOTE_SMS_MESSAGE_ID);
+        return messageId != null && smsDispatcher.status(messageId) == DeliveryStatus.FAILED;
+    }
+
     @Override
     public boolean requiresUser() {
         // This authenticator acts on an already identified user (to get their mobile number)
@@ -1,5 +1,11 @@
 package com.mysillydreams.keycloak.authenticator;
 
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics;
+import com.mysillydreams.keycloak.authenticator.ratelimit.OtpRateLimiter;
+import com.mysillydreams.keycloak.authenticator.sms.SmsDispatcher;
+import com.mysillydreams.keycloak.authenticator.sms.SmsOutbox;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsRoutes;
+import io.micrometer.core.instrument.Metrics;
 import org.keycloak.Config;
 import org.keycloak.authentication.Authenticator;
 import org.keycloak.authentication.AuthenticatorFactory;
@@ -8,15 +14,21 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.provider.ProviderConfigProperty;
 
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
 public class SmsOtpAuthenticatorFactory implements AuthenticatorFactory {
 
     public static final String PROVIDER_ID = "sms-otp-authenticator";
-    private static final SmsOtpAuthenticator SINGLETON = new SmsOtpAuthenticator();
+    private SmsOtpAuthenticator singleton; // Created in init(), shared by all sessions
+    private SmsDispatcher smsDispatcher;
 
     public static final String CONFIG_SMS_SERVICE_URL = "sms.service.url";
+    public static final String CONFIG_SMS_SERVICE_BULK_URL = "sms.service.bulk.url";
+    public static final String CONFIG_SMS_PROVIDERS = "sms.providers";
     public static final String CONFIG_OTP_LENGTH = "otp.length";
     public static final String CONFIG_OTP_TTL_SECONDS = "otp.ttl.seconds";
 
@@ -32,7 +44,7 @@ public class SmsOtpAuthenticatorFactory implements AuthenticatorFactory {
         // though for this simple case, SINGLETON might not store session state directly.
         // If SmsOtpAuthenticator needs per-request session data, it should be instantiated here:
         // return new SmsOtpAuthenticator(session);
-        return SINGLETON;
+        return singleton;
     }
 
     private static final AuthenticationExecutionModel.Requirement[] REQUIREMENT_CHOICES = {
@@ -69,6 +81,24 @@ public class SmsOtpAuthenticatorFactory implements AuthenticatorFactory {
                         ProviderConfigProperty.STRING_TYPE,
                         "http://localhost:8082/sms/send" // Default value, adjust port as needed for sms-service
                 ),
+                new ProviderConfigProperty(
+                        CONFIG_SMS_SERVICE_BULK_URL,
+                        "SMS Service Bulk URL",
+                        "Optional endpoint accepting {\"messages\": [{\"id\", \"mobileNumber\", \"message\"}, ...]}. When set, queued OTP texts are sent in batches.",
+                        ProviderConfigProperty.STRING_TYPE,
+                        ""
+                ),
+                new ProviderConfigProperty(
+                        CONFIG_SMS_PROVIDERS,
+                        "SMS Providers",
+                        "Optional JSON array of SMS vendor endpoints; overrides the URLs above. Each entry has a name, a type "
+                                + "(\"webhook\" posts the sms-service format to url, and batches to bulkUrl if set; \"template\" posts "
+                                + "template with ${id}, ${mobileNumber} and ${message} filled in, as contentType), optional headers, "
+                                + "and a weight (default 1; 0 for failover only). Texts are spread by weight and fail over to the "
+                                + "other endpoints.",
+                        ProviderConfigProperty.TEXT_TYPE,
+                        ""
+                ),
                 new ProviderConfigProperty(
                         CONFIG_OTP_LENGTH,
                         "OTP Length",
@@ -82,7 +112,27 @@ public class SmsOtpAuthenticatorFactory implements AuthenticatorFactory {
                         "The validity duration of the OTP in seconds.",
                         ProviderConfigProperty.STRING_TYPE,
                         "300" // 5 minutes
-                )
+                ),
+                rateLimitProperty(OtpRateLimiter.SEND_PER_MOBILE, "OTP Sends per Mobile Number",
+                        "OTP texts sent to one mobile number"),
+                rateLimitProperty(OtpRateLimiter.SEND_PER_USER, "OTP Sends per User",
+                        "OTP texts sent for one user"),
+                rateLimitProperty(OtpRateLimiter.SEND_PER_IP, "OTP Sends per Client IP",
+                        "OTP texts requested from one client IP"),
+                rateLimitProperty(OtpRateLimiter.VERIFY_PER_USER, "OTP Attempts per User",
+                        "codes entered for one user"),
+                rateLimitProperty(OtpRateLimiter.VERIFY_PER_IP, "OTP Attempts per Client IP",
+                        "codes entered from one client IP")
+        );
+    }
+
+    private static ProviderConfigProperty rateLimitProperty(String name, String label, String limited) {
+        return new ProviderConfigProperty(
+                name,
+                label,
+                "Maximum number of " + limited + ", as permits/periodSeconds (e.g. 3/300). Leave empty for no limit.",
+                ProviderConfigProperty.STRING_TYPE,
+                OtpRateLimiter.DEFAULT_LIMITS.get(name)
         );
     }
 
@@ -104,16 +154,49 @@ public class SmsOtpAuthenticatorFactory implements AuthenticatorFactory {
     @Override
     public void init(Config.Scope config) {
         // Called when Keycloak server starts.
-        // Can be used to initialize resources based on global server config if needed.
+        // Dispatch settings are server-wide, e.g. --spi-authenticator-sms-otp-authenticator-request-timeout-millis=5000
+        // One client for all providers: it keeps connections alive and reuses them, multiplexing over
+        // HTTP/2 where the vendor supports it and pooling HTTP/1.1 connections where it does not.
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(config.get("httpVersion", HttpClient.Version.HTTP_2.name())))
+                .connectTimeout(Duration.ofMillis(config.getLong("connectTimeoutMillis", 2000L)))
+                .build();
+        // Keycloak's Micrometer registry is part of the global one, so these show up on its metrics endpoint.
+        OtpMetrics metrics = new OtpMetrics(Metrics.globalRegistry);
+        SmsRoutes routes = new SmsRoutes(
+                config.getInt("circuitBreakerFailureThreshold", 5),
+                config.getLong("circuitBreakerOpenMillis", 30000L));
+        SmsOutbox outbox = new SmsOutbox(
+                Path.of(config.get("outboxDir", Path.of(System.getProperty("kc.home.dir", "."), "data", "sms-outbox").toString())),
+                config.getInt("outboxMaxPending", 100000));
+        smsDispatcher = new SmsDispatcher(httpClient,
+                Duration.ofMillis(config.getLong("requestTimeoutMillis", 5000L)),
+                outbox,
+                routes,
+                metrics,
+                config.getInt("batchSize", 100),
+                config.getInt("maxAttempts", 5),
+                config.getLong("retryBaseMillis", 1000L),
+                config.getLong("retryMaxMillis", 60000L),
+                config.getInt("maxTrackedDeliveries", 100000));
+        OtpRateLimiter rateLimiter = new OtpRateLimiter(
+                config.getInt("rateLimitStripes", 64),
+                config.getInt("rateLimitMaxKeys", 100000)); // Per limit; bounds memory at a few MB each
+        singleton = new SmsOtpAuthenticator(smsDispatcher, rateLimiter, metrics);
     }
 
     @Override
     public void postInit(KeycloakSessionFactory factory) {
         // Called after all provider factories have been initialized.
+        // Delivery starts here, so messages left in the outbox by a previous run go out once the server is up.
+        smsDispatcher.start();
     }
 
     @Override
     public void close() {
         // Called when Keycloak server shuts down.
+        if (smsDispatcher != null) {
+            smsDispatcher.stop();
+        }
     }
 }
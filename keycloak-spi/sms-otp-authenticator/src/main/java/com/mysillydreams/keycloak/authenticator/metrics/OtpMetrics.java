@@ -0,0 +1,148 @@
+package com.mysillydreams.keycloak.authenticator.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the SMS OTP step, published through Keycloak's metrics endpoint (with
+ * {@code --metrics-enabled=true}) when registered with Micrometer's global registry.
+ * <p>
+ * Every meter is registered up front, or on the first use of a provider name, and then looked up
+ * without allocating, so recording on the login path costs a few atomic updates. Durations are passed
+ * in as nanoTime differences rather than {@link Timer.Sample}s for the same reason.
+ */
+public class OtpMetrics {
+
+    public static final String GENERATION = "keycloak.sms.otp.generation";
+    public static final String SENDS = "keycloak.sms.otp.sends";
+    public static final String DISPATCH = "keycloak.sms.otp.dispatch";
+    public static final String DELIVERIES = "keycloak.sms.otp.deliveries";
+    public static final String VERIFICATIONS = "keycloak.sms.otp.verifications";
+    public static final String TIME_TO_ENTER = "keycloak.sms.otp.time.to.enter";
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx", "error"};
+
+    /**
+     * What became of a request to send an OTP.
+     */
+    public enum SendOutcome { QUEUED, RATE_LIMITED, FAILED }
+
+    /**
+     * What became of an entered code.
+     */
+    public enum VerificationOutcome { SUCCESS, INVALID, EXPIRED, NO_OTP, DELIVERY_FAILED, RATE_LIMITED }
+
+    private final MeterRegistry registry;
+    private final Timer generation;
+    private final Counter[] sends;
+    private final Counter[] verifications;
+    private final Counter delivered;
+    private final Counter undelivered;
+    private final Timer timeToEnter;
+    private final Map<String, Timer[]> dispatchByProvider = new ConcurrentHashMap<>(); // Provider names are few
+
+    public OtpMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.generation = Timer.builder(GENERATION)
+                .description("Time to generate an OTP code")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofMillis(10))
+                .register(registry);
+        this.sends = new Counter[SendOutcome.values().length];
+        for (SendOutcome outcome : SendOutcome.values()) {
+            sends[outcome.ordinal()] = Counter.builder(SENDS)
+                    .description("OTP send requests, by outcome")
+                    .tag("outcome", tagValue(outcome))
+                    .register(registry);
+        }
+        this.verifications = new Counter[VerificationOutcome.values().length];
+        for (VerificationOutcome outcome : VerificationOutcome.values()) {
+            verifications[outcome.ordinal()] = Counter.builder(VERIFICATIONS)
+                    .description("Entered OTP codes, by outcome")
+                    .tag("outcome", tagValue(outcome))
+                    .register(registry);
+        }
+        this.delivered = deliveries("sent");
+        this.undelivered = deliveries("failed");
+        this.timeToEnter = Timer.builder(TIME_TO_ENTER)
+                .description("Time from sending an OTP to the correct code being entered")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofSeconds(1))
+                .maximumExpectedValue(Duration.ofMinutes(15))
+                .register(registry);
+    }
+
+    public void recordGeneration(long nanos) {
+        generation.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSend(SendOutcome outcome) {
+        sends[outcome.ordinal()].increment();
+    }
+
+    public void recordVerification(VerificationOutcome outcome) {
+        verifications[outcome.ordinal()].increment();
+    }
+
+    public void recordTimeToEnter(long millis) {
+        timeToEnter.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records one request to an SMS provider.
+     *
+     * @param statusCode the HTTP status, or -1 if no response was received
+     */
+    public void recordDispatch(String provider, int statusCode, long nanos) {
+        Timer[] timers = dispatchByProvider.get(provider);
+        if (timers == null) {
+            timers = dispatchByProvider.computeIfAbsent(provider, this::dispatchTimers);
+        }
+        int statusClass = statusCode / 100 - 1;
+        if (statusClass < 0 || statusClass > 4) {
+            statusClass = STATUS_CLASSES.length - 1;
+        }
+        timers[statusClass].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the final outcome of queued texts: delivered, or given up on.
+     */
+    public void recordDeliveries(boolean sent, int count) {
+        (sent ? delivered : undelivered).increment(count);
+    }
+
+    private Timer[] dispatchTimers(String provider) {
+        Timer[] timers = new Timer[STATUS_CLASSES.length];
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            timers[i] = Timer.builder(DISPATCH)
+                    .description("Requests to SMS providers, by provider and HTTP status class")
+                    .tag("provider", provider)
+                    .tag("status", STATUS_CLASSES[i])
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+        }
+        return timers;
+    }
+
+    private Counter deliveries(String outcome) {
+        return Counter.builder(DELIVERIES)
+                .description("Queued OTP texts, by final outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> outcome) {
+        return outcome.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,104 @@
+package com.mysillydreams.keycloak.authenticator.ratelimit;
+
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits how often an OTP is sent and how often a code may be entered, per mobile number, user and
+ * client IP. The limits come from the authenticator config of each request, so every realm can set its
+ * own; the buckets are shared, so the same number or IP is limited across realms.
+ */
+public class OtpRateLimiter {
+
+    public static final String SEND_PER_MOBILE = "ratelimit.send.mobile";
+    public static final String SEND_PER_USER = "ratelimit.send.user";
+    public static final String SEND_PER_IP = "ratelimit.send.ip";
+    public static final String VERIFY_PER_USER = "ratelimit.verify.user";
+    public static final String VERIFY_PER_IP = "ratelimit.verify.ip";
+
+    /**
+     * Used when the authenticator config does not set a limit; an empty value there disables it.
+     */
+    public static final Map<String, String> DEFAULT_LIMITS = Map.of(
+            SEND_PER_MOBILE, "3/300",
+            SEND_PER_USER, "5/900",
+            SEND_PER_IP, "30/60",
+            VERIFY_PER_USER, "10/300",
+            VERIFY_PER_IP, "100/60");
+
+    private static final Logger logger = Logger.getLogger(OtpRateLimiter.class);
+
+    private final TokenBucketLimiter sendsByMobile;
+    private final TokenBucketLimiter sendsByUser;
+    private final TokenBucketLimiter sendsByIp;
+    private final TokenBucketLimiter verificationsByUser;
+    private final TokenBucketLimiter verificationsByIp;
+    private final Map<String, Optional<RateLimit>> parsedLimits = new ConcurrentHashMap<>(); // Config values are few
+
+    public OtpRateLimiter(int stripes, int maxKeys) {
+        this.sendsByMobile = new TokenBucketLimiter(stripes, maxKeys);
+        this.sendsByUser = new TokenBucketLimiter(stripes, maxKeys);
+        this.sendsByIp = new TokenBucketLimiter(stripes, maxKeys);
+        this.verificationsByUser = new TokenBucketLimiter(stripes, maxKeys);
+        this.verificationsByIp = new TokenBucketLimiter(stripes, maxKeys);
+    }
+
+    /**
+     * Takes a permit from each send limit. If one of them is exhausted, the send is rejected and the
+     * permits already taken are given back, so a rejected send counts against no limit.
+     *
+     * @param config the authenticator config holding the limits
+     */
+    public boolean allowSend(Map<String, String> config, String mobileNumber, String userId, String clientIp) {
+        RateLimit perIp = limit(config, SEND_PER_IP);
+        RateLimit perUser = limit(config, SEND_PER_USER);
+        RateLimit perMobile = limit(config, SEND_PER_MOBILE);
+        if (!sendsByIp.tryAcquire(clientIp, perIp)) {
+            return false;
+        }
+        if (!sendsByUser.tryAcquire(userId, perUser)) {
+            sendsByIp.release(clientIp, perIp);
+            return false;
+        }
+        if (!sendsByMobile.tryAcquire(mobileNumber, perMobile)) {
+            sendsByUser.release(userId, perUser);
+            sendsByIp.release(clientIp, perIp);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #allowSend} for the verification limits.
+     */
+    public boolean allowVerification(Map<String, String> config, String userId, String clientIp) {
+        RateLimit perIp = limit(config, VERIFY_PER_IP);
+        RateLimit perUser = limit(config, VERIFY_PER_USER);
+        if (!verificationsByIp.tryAcquire(clientIp, perIp)) {
+            return false;
+        }
+        if (!verificationsByUser.tryAcquire(userId, perUser)) {
+            verificationsByIp.release(clientIp, perIp);
+            return false;
+        }
+        return true;
+    }
+
+    private RateLimit limit(Map<String, String> config, String name) {
+        String value = config.get(name);
+        if (value == null) {
+            value = DEFAULT_LIMITS.get(name);
+        }
+        return parsedLimits.computeIfAbsent(value, raw -> {
+            try {
+                return Optional.ofNullable(RateLimit.parse(raw));
+            } catch (IllegalArgumentException e) {
+                logger.warnf("Ignoring invalid OTP rate limit '%s'; expected permits/periodSeconds, e.g. 3/300", raw);
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mysillydreams.keycloak.authenticator.ratelimit;
+
+/**
+ * A limit of {@code permits} events per {@code periodSeconds}, written as {@code "permits/periodSeconds"}
+ * (e.g. {@code "3/300"}). The full allowance may be used as a burst; after that permits come back
+ * evenly over the period.
+ */
+public final class RateLimit {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    private RateLimit(int permits, long periodSeconds) {
+        this.intervalNanos = periodSeconds * 1_000_000_000L / permits;
+        this.burstNanos = intervalNanos * (permits - 1);
+    }
+
+    /**
+     * @return the limit, or null if the value is empty (no limit)
+     * @throws IllegalArgumentException if the value is not of the form "permits/periodSeconds"
+     */
+    public static RateLimit parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Invalid rate limit: " + value);
+        }
+        try {
+            int permits = Integer.parseInt(value.substring(0, slash).trim());
+            long periodSeconds = Long.parseLong(value.substring(slash + 1).trim());
+            if (permits < 1 || periodSeconds < 1) {
+                throw new IllegalArgumentException("Invalid rate limit: " + value);
+            }
+            return new RateLimit(permits, periodSeconds);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid rate limit: " + value, e);
+        }
+    }
+
+    long intervalNanos() {
+        return intervalNanos;
+    }
+
+    long burstNanos() {
+        return burstNanos;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mysillydreams.keycloak.authenticator.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets keyed by a string (a mobile number, user id or client IP), in the GCRA form: each key
+ * only stores the time at which its bucket will be full again, so a check is one map lookup and a
+ * couple of arithmetic operations.
+ * <p>
+ * Keys are spread over independently locked stripes, so concurrent logins rarely wait on each other.
+ * Each stripe holds at most {@code maxKeys / stripes} keys and drops the least recently used one when
+ * full. A bucket that has been idle long enough to refill is the same as no bucket, which is what the
+ * dropped keys almost always are; under a flood of distinct keys, limits for the oldest keys reset early.
+ */
+public class TokenBucketLimiter {
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public TokenBucketLimiter(int stripeCount, int maxKeys) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1; // Next power of two
+        this.stripes = new Stripe[count];
+        this.stripeMask = count - 1;
+        int maxKeysPerStripe = Math.max(1, maxKeys / count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(maxKeysPerStripe);
+        }
+    }
+
+    /**
+     * Takes one permit for the key if it has one left.
+     *
+     * @param limit the limit to apply; null means unlimited
+     * @return false if the key is over its limit
+     */
+    public boolean tryAcquire(String key, RateLimit limit) {
+        if (limit == null || key == null) {
+            return true;
+        }
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & stripeMask];
+        long now = System.nanoTime();
+        stripe.lock.lock();
+        try {
+            long[] bucket = stripe.buckets.get(key);
+            long fullAt = bucket == null ? now : Math.max(bucket[0], now);
+            if (fullAt - now > limit.burstNanos()) {
+                return false;
+            }
+            if (bucket == null) {
+                stripe.buckets.put(key, new long[] {fullAt + limit.intervalNanos()});
+            } else {
+                bucket[0] = fullAt + limit.intervalNanos();
+            }
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire} for a request that was then rejected by another
+     * limit. Permits are time offsets that add up, so this is exact even if the key was used meanwhile.
+     */
+    public void release(String key, RateLimit limit) {
+        if (limit == null || key == null) {
+            return;
+        }
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & stripeMask];
+        stripe.lock.lock();
+        try {
+            long[] bucket = stripe.buckets.get(key);
+            if (bucket != null) { // Otherwise dropped as idle, i.e. already full
+                bucket[0] -= limit.intervalNanos();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, long[]> buckets; // Guarded by lock; the value is the time the bucket is full again
+
+        private Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+}
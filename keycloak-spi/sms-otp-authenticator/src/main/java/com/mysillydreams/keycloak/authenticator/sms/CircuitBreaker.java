@@ -0,0 +1,52 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops calling the SMS gateway after a run of consecutive failures. While open, sends are rejected
+ * without a request; once the open period has passed a single trial request is let through, and its
+ * outcome closes the breaker again or re-opens it.
+ */
+public class CircuitBreaker {
+
+    private static final long CLOSED = -1L;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong(CLOSED);
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * @return true if a request may be sent now
+     */
+    public boolean allowRequest() {
+        long opened = openedAt.get();
+        if (opened == CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        // Only the caller that moves the open timestamp forward gets the trial request.
+        return now - opened >= openNanos && openedAt.compareAndSet(opened, now);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        openedAt.set(CLOSED);
+    }
+
+    public void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(System.nanoTime());
+        }
+    }
+
+    public boolean isOpen() {
+        return openedAt.get() != CLOSED;
+    }
+}
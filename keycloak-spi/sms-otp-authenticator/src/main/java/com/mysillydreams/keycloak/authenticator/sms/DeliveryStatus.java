@@ -0,0 +1,7 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+public enum DeliveryStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,111 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+/**
+ * One line of the outbox journal: a message being added (or re-added with its retry state), or a
+ * message leaving the outbox.
+ */
+public class OutboxRecord {
+
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+
+    private String op;
+    private String id;
+    private String sessionKey;
+    private String mobileNumber;
+    private String text;
+    private String serviceUrl;
+    private String bulkServiceUrl;
+    private String providers;
+    private long expiresAt;
+    private int attempts;
+    private long nextAttemptAt;
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSessionKey() {
+        return sessionKey;
+    }
+
+    public void setSessionKey(String sessionKey) {
+        this.sessionKey = sessionKey;
+    }
+
+    public String getMobileNumber() {
+        return mobileNumber;
+    }
+
+    public void setMobileNumber(String mobileNumber) {
+        this.mobileNumber = mobileNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getServiceUrl() {
+        return serviceUrl;
+    }
+
+    public void setServiceUrl(String serviceUrl) {
+        this.serviceUrl = serviceUrl;
+    }
+
+    public String getBulkServiceUrl() {
+        return bulkServiceUrl;
+    }
+
+    public void setBulkServiceUrl(String bulkServiceUrl) {
+        this.bulkServiceUrl = bulkServiceUrl;
+    }
+
+    public String getProviders() {
+        return providers;
+    }
+
+    public void setProviders(String providers) {
+        this.providers = providers;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+}
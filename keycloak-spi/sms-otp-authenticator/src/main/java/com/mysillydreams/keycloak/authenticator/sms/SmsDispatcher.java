@@ -0,0 +1,286 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsEndpoint;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsProvider;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsRoute;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsRoutes;
+import org.jboss.logging.Logger;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Delivers OTP texts from the {@link SmsOutbox} on a background thread, so a slow or failing SMS
+ * service never holds up Keycloak's worker threads.
+ * <p>
+ * The thread claims up to {@code batchSize} due messages at a time. Each message is sent through the
+ * endpoints of its {@link SmsRoute} in weighted random order: if a send fails, the message moves on to
+ * its next endpoint right away. Messages headed for an endpoint that accepts batches are sent together,
+ * one request per endpoint; the rest are sent one request each, all concurrently. Once every endpoint
+ * has failed, the message is retried with exponential backoff and jitter until {@code maxAttempts} is
+ * reached or the OTP expires. Each endpoint has a circuit breaker; while all of a message's endpoints
+ * are open, it waits in the outbox instead of using up its attempts.
+ * <p>
+ * The outcome of each message is kept in a bounded in-memory map, looked up by message id.
+ */
+public class SmsDispatcher {
+
+    private static final Logger logger = Logger.getLogger(SmsDispatcher.class);
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final SmsOutbox outbox;
+    private final SmsRoutes routes;
+    private final OtpMetrics metrics;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+    private final int maxTrackedStatuses;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, DeliveryStatus> statuses; // Guarded by lock
+    private volatile boolean running;
+    private Thread worker;
+
+    public SmsDispatcher(HttpClient httpClient, Duration requestTimeout, SmsOutbox outbox, SmsRoutes routes,
+                         OtpMetrics metrics, int batchSize, int maxAttempts, long retryBaseMillis, long retryMaxMillis,
+                         int maxTrackedStatuses) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+        this.outbox = outbox;
+        this.routes = routes;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseMillis = retryBaseMillis;
+        this.retryMaxMillis = retryMaxMillis;
+        this.maxTrackedStatuses = maxTrackedStatuses;
+        this.statuses = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DeliveryStatus> eldest) {
+                return size() > SmsDispatcher.this.maxTrackedStatuses;
+            }
+        };
+    }
+
+    /**
+     * Opens the outbox, including messages left from before a restart, and starts delivering.
+     */
+    public void start() {
+        outbox.open();
+        running = true;
+        worker = new Thread(this::run, "sms-otp-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(requestTimeout.toMillis() + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        outbox.close();
+    }
+
+    /**
+     * Queues the message for delivery and returns immediately.
+     *
+     * @return PENDING if the message was queued, FAILED if the outbox is full
+     */
+    public DeliveryStatus dispatch(SmsMessage message) {
+        if (!outbox.add(message)) {
+            logger.warn("SMS outbox is full; OTP text not queued.");
+            return track(message.getId(), DeliveryStatus.FAILED);
+        }
+        return track(message.getId(), DeliveryStatus.PENDING);
+    }
+
+    /**
+     * @return the last known status of the message, or null if it is unknown (e.g. no longer tracked)
+     */
+    public DeliveryStatus status(String messageId) {
+        lock.lock();
+        try {
+            return statuses.get(messageId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<SmsOutbox.Pending> batch = outbox.takeDue(batchSize, IDLE_POLL_MILLIS);
+                if (!batch.isEmpty()) {
+                    outbox.flush(); // The batch's messages are on disk before the first attempt
+                    deliver(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in the SMS dispatcher", e);
+            }
+        }
+    }
+
+    private void deliver(List<SmsOutbox.Pending> batch) {
+        long now = System.currentTimeMillis();
+        List<Delivery> deliveries = new ArrayList<>(batch.size());
+        for (SmsOutbox.Pending entry : batch) {
+            SmsMessage message = entry.getMessage();
+            SmsRoute route;
+            if (message.getExpiresAt().toEpochMilli() <= now) {
+                giveUp(entry, "the OTP expired");
+            } else if ((route = routes.resolve(message)) == null) {
+                giveUp(entry, "its SMS providers setting is invalid");
+            } else {
+                deliveries.add(new Delivery(entry, route.failoverOrder()));
+            }
+        }
+        // Bounded by the request timeout per endpoint; the next batch starts once this one is settled.
+        send(deliveries).join();
+    }
+
+    // Sends each message to its next endpoint, batching messages whose next endpoint accepts batches.
+    private CompletableFuture<Void> send(List<Delivery> deliveries) {
+        Map<SmsEndpoint, List<Delivery>> batches = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (Delivery delivery : deliveries) {
+            SmsEndpoint endpoint = delivery.nextEndpoint();
+            if (endpoint == null) {
+                settleUndelivered(delivery);
+            } else if (endpoint.getProvider().supportsBatch()) {
+                batches.computeIfAbsent(endpoint, e -> new ArrayList<>()).add(delivery);
+            } else {
+                sends.add(sendTo(endpoint, List.of(delivery)));
+            }
+        }
+        batches.forEach((endpoint, batch) -> sends.add(sendTo(endpoint, batch)));
+        return CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<Void> sendTo(SmsEndpoint endpoint, List<Delivery> deliveries) {
+        SmsProvider provider = endpoint.getProvider();
+        List<SmsMessage> messages = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            delivery.attempted = true;
+            messages.add(delivery.entry.getMessage());
+        }
+        HttpRequest request;
+        try {
+            request = provider.newRequest(messages).timeout(requestTimeout).build();
+        } catch (RuntimeException e) {
+            logger.errorf(e, "Cannot build the request for SMS provider %s", provider.getName());
+            return send(deliveries);
+        }
+
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    metrics.recordDispatch(provider.getName(), failure == null ? response.statusCode() : -1,
+                            System.nanoTime() - start);
+                    if (failure == null && response.statusCode() >= 200 && response.statusCode() < 300) {
+                        endpoint.getCircuitBreaker().recordSuccess();
+                        for (Delivery delivery : deliveries) {
+                            outbox.remove(delivery.entry.getMessage().getId());
+                            track(delivery.entry.getMessage().getId(), DeliveryStatus.SENT);
+                        }
+                        metrics.recordDeliveries(true, deliveries.size());
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    endpoint.getCircuitBreaker().recordFailure();
+                    if (failure != null) {
+                        logger.errorf(failure, "Exception while sending %d OTP text(s) via SMS provider %s",
+                                deliveries.size(), provider.getName());
+                    } else {
+                        logger.errorf("Failed to send %d OTP text(s) via SMS provider %s. Status: %d",
+                                deliveries.size(), provider.getName(), response.statusCode());
+                    }
+                    return send(deliveries); // Fails over to each message's next endpoint
+                })
+                .thenCompose(Function.identity());
+    }
+
+    // Every endpoint of the message failed or had its circuit breaker open.
+    private void settleUndelivered(Delivery delivery) {
+        if (delivery.attempted) {
+            retryOrGiveUp(delivery.entry);
+        } else {
+            // Not sent at all; wait for a breaker to close without using up an attempt.
+            outbox.retry(delivery.entry.getMessage().getId(), System.currentTimeMillis() + retryBaseMillis, false);
+        }
+    }
+
+    private void retryOrGiveUp(SmsOutbox.Pending entry) {
+        int attempts = entry.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            giveUp(entry, "it failed " + attempts + " times");
+            return;
+        }
+        long backoff = Math.min(retryMaxMillis, retryBaseMillis << Math.min(attempts - 1, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1); // Spread retries after an outage
+        outbox.retry(entry.getMessage().getId(), System.currentTimeMillis() + delay, true);
+    }
+
+    private void giveUp(SmsOutbox.Pending entry, String reason) {
+        logger.warnf("Giving up on OTP text %s because %s", entry.getMessage().getId(), reason);
+        outbox.remove(entry.getMessage().getId());
+        track(entry.getMessage().getId(), DeliveryStatus.FAILED);
+        metrics.recordDeliveries(false, 1);
+    }
+
+    private DeliveryStatus track(String messageId, DeliveryStatus status) {
+        lock.lock();
+        try {
+            statuses.put(messageId, status);
+        } finally {
+            lock.unlock();
+        }
+        return status;
+    }
+
+    /**
+     * One message in a delivery round and the endpoints left to try. Only touched by the send that
+     * currently holds it.
+     */
+    private static final class Delivery {
+        private final SmsOutbox.Pending entry;
+        private final List<SmsEndpoint> endpoints;
+        private int next;
+        private boolean attempted;
+
+        private Delivery(SmsOutbox.Pending entry, List<SmsEndpoint> endpoints) {
+            this.entry = entry;
+            this.endpoints = endpoints;
+        }
+
+        // Skips endpoints whose circuit breaker is open.
+        private SmsEndpoint nextEndpoint() {
+            while (next < endpoints.size()) {
+                SmsEndpoint endpoint = endpoints.get(next++);
+                if (endpoint.getCircuitBreaker().allowRequest()) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One OTP text to deliver. The id is stored in the authentication session so the form can look up
+ * the delivery status later.
+ */
+public final class SmsMessage {
+
+    private final String id;
+    private final String sessionKey;
+    private final String mobileNumber;
+    private final String text;
+    private final String serviceUrl;
+    private final String bulkServiceUrl;
+    private final String providers;
+    private final Instant expiresAt;
+
+    public SmsMessage(String sessionKey, String mobileNumber, String text, String serviceUrl, String bulkServiceUrl,
+                      String providers, Instant expiresAt) {
+        this(UUID.randomUUID().toString(), sessionKey, mobileNumber, text, serviceUrl, bulkServiceUrl, providers, expiresAt);
+    }
+
+    public SmsMessage(String id, String sessionKey, String mobileNumber, String text, String serviceUrl,
+                      String bulkServiceUrl, String providers, Instant expiresAt) {
+        this.id = id;
+        this.sessionKey = sessionKey;
+        this.mobileNumber = mobileNumber;
+        this.text = text;
+        this.serviceUrl = serviceUrl;
+        this.bulkServiceUrl = bulkServiceUrl;
+        this.providers = providers;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the authentication session (root id and tab) the OTP belongs to; a newer message for the
+     * same session replaces an undelivered older one
+     */
+    public String getSessionKey() {
+        return sessionKey;
+    }
+
+    public String getMobileNumber() {
+        return mobileNumber;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getServiceUrl() {
+        return serviceUrl;
+    }
+
+    /**
+     * @return the SMS service endpoint accepting several messages per request, or null if there is none
+     */
+    public String getBulkServiceUrl() {
+        return bulkServiceUrl;
+    }
+
+    /**
+     * @return the SMS providers setting (a JSON array) to send through, or null to use the service URLs
+     */
+    public String getProviders() {
+        return providers;
+    }
+
+    /**
+     * @return when the OTP in the text expires; delivering it after that is pointless
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,531 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import org.jboss.logging.Logger;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Messages waiting to be delivered, kept in memory and in an append-only journal file so they survive
+ * a Keycloak restart. Every change is appended as one JSON line; on open the journal is replayed and
+ * rewritten with only the pending messages, and it is rewritten again whenever it has grown well past
+ * the number of pending messages.
+ * <p>
+ * Callers only update memory under the lock: unclaimed messages wait in a queue ordered by their next
+ * attempt, so claiming due messages does not scan the others, and journal records are handed to a
+ * single writer thread. That thread appends them to the OS page cache in batches, rewrites the journal
+ * when it is due, and forces it to disk on {@link #flush()}, which the dispatcher calls once per batch.
+ * A Keycloak crash can therefore lose the records not yet appended, and a host crash the messages
+ * added since the last flush.
+ * <p>
+ * A session has at most one pending message: a newer OTP for the same session replaces the older one,
+ * whose code is no longer valid anyway. The journal holds OTP codes, so it is only readable by the
+ * Keycloak user where the file system supports it.
+ */
+public class SmsOutbox {
+
+    private static final Logger logger = Logger.getLogger(SmsOutbox.class);
+    private static final String JOURNAL_FILE = "sms-outbox.log";
+    private static final int MIN_COMPACTION_RECORDS = 10_000;
+
+    private final Path directory;
+    private final int maxPending;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition recordsQueued = lock.newCondition();
+    private final Condition recordsFlushed = lock.newCondition();
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>(); // Guarded by lock, by message id
+    private final Map<String, String> idsBySession = new HashMap<>(); // Guarded by lock
+    // Guarded by lock. Unclaimed messages by next attempt, then age; removed ones are dropped when they reach the head.
+    private final PriorityQueue<Pending> unclaimed = new PriorityQueue<>(
+            Comparator.comparingLong((Pending entry) -> entry.nextAttemptAt).thenComparingLong(entry -> entry.sequence));
+    private long nextSequence; // Guarded by lock
+    private final ArrayDeque<OutboxRecord> journalQueue = new ArrayDeque<>(); // Guarded by lock
+    private long queuedRecords; // Guarded by lock; records handed to the writer so far
+    private long flushedRecords; // Guarded by lock; records known to be on disk
+    private boolean flushRequested; // Guarded by lock
+    private boolean closing; // Guarded by lock
+    private Thread writer; // Guarded by lock; null if the journal is not in use
+    private FileChannel journal; // Writer thread only once open; null if the journal could not be opened
+    private int journalRecords; // Writer thread only once open
+
+    public SmsOutbox(Path directory, int maxPending) {
+        this.directory = directory;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Replays the journal. If it cannot be read or written, the outbox keeps working in memory only.
+     */
+    public void open() {
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(JOURNAL_FILE);
+            if (Files.exists(file)) {
+                replay(file);
+            }
+            rewriteJournal(snapshot());
+            writer = new Thread(this::writeJournal, "sms-outbox-journal");
+            writer.setDaemon(true);
+            writer.start();
+            logger.infof("SMS outbox opened at %s with %d pending messages", file, pending.size());
+        } catch (IOException e) {
+            logger.errorf(e, "Cannot use the SMS outbox journal in %s; pending messages will not survive a restart", directory);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the outbox is full and the message was not added
+     */
+    public boolean add(SmsMessage message) {
+        lock.lock();
+        try {
+            String supersededId = message.getSessionKey() == null ? null : idsBySession.get(message.getSessionKey());
+            if (supersededId != null) {
+                Pending superseded = pending.get(supersededId);
+                // One already being sent cannot be recalled; it just no longer blocks the new one.
+                if (superseded != null && !superseded.taken) {
+                    pending.remove(supersededId);
+                    superseded.removed = true;
+                    queueRecord(removeRecord(supersededId));
+                }
+                idsBySession.remove(message.getSessionKey());
+            }
+            if (pending.size() >= maxPending) {
+                return false;
+            }
+            Pending entry = new Pending(message, 0, 0L, nextSequence++);
+            pending.put(message.getId(), entry);
+            unclaimed.add(entry);
+            if (message.getSessionKey() != null) {
+                idsBySession.put(message.getSessionKey(), message.getId());
+            }
+            queueRecord(addRecord(entry));
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until at least one message is due, then claims up to {@code max} due messages, soonest due
+     * first. Claimed messages are not returned again until they are passed to {@link #retry}.
+     *
+     * @return the claimed messages; empty if none became due within the timeout
+     */
+    public List<Pending> takeDue(int max, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                List<Pending> due = new ArrayList<>();
+                Pending head = null;
+                while (due.size() < max && (head = unclaimed.peek()) != null) {
+                    if (head.removed) {
+                        unclaimed.poll();
+                    } else if (head.nextAttemptAt <= now) {
+                        unclaimed.poll();
+                        head.taken = true;
+                        due.add(head);
+                    } else {
+                        break;
+                    }
+                }
+                if (!due.isEmpty() || now >= deadline) {
+                    return due;
+                }
+                long nextDue = head == null ? Long.MAX_VALUE : head.nextAttemptAt;
+                changed.await(Math.min(deadline, nextDue) - now, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a claimed message after it was delivered or given up on.
+     */
+    public void remove(String id) {
+        lock.lock();
+        try {
+            Pending entry = pending.remove(id);
+            if (entry == null) {
+                return;
+            }
+            entry.removed = true;
+            String sessionKey = entry.message.getSessionKey();
+            if (sessionKey != null) {
+                idsBySession.remove(sessionKey, id);
+            }
+            queueRecord(removeRecord(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a claimed message to the outbox, to be sent again at the given time.
+     *
+     * @param failedAttempt false if the message was not actually sent (e.g. the circuit breaker was open)
+     */
+    public void retry(String id, long nextAttemptAt, boolean failedAttempt) {
+        lock.lock();
+        try {
+            Pending entry = pending.get(id);
+            if (entry == null || !entry.taken) {
+                return;
+            }
+            if (failedAttempt) {
+                entry.attempts++;
+            }
+            entry.nextAttemptAt = nextAttemptAt;
+            entry.taken = false;
+            unclaimed.add(entry);
+            queueRecord(addRecord(entry));
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the journal records of all changes made so far are forced to disk.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = queuedRecords;
+            if (writer == null || flushedRecords >= target) {
+                return;
+            }
+            flushRequested = true;
+            recordsQueued.signal();
+            while (writer != null && flushedRecords < target) {
+                recordsFlushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends and forces the queued journal records, then closes the journal.
+     */
+    public void close() {
+        Thread stopping;
+        lock.lock();
+        try {
+            stopping = writer;
+            closing = true;
+            recordsQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (stopping == null) {
+            return;
+        }
+        try {
+            stopping.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void queueRecord(OutboxRecord record) {
+        if (writer == null) {
+            return;
+        }
+        journalQueue.add(record);
+        queuedRecords++;
+        recordsQueued.signal();
+    }
+
+    // The writer thread: appends queued records in batches, forces them on request and compacts.
+    private void writeJournal() {
+        List<OutboxRecord> batch = new ArrayList<>();
+        try {
+            while (true) {
+                long drained;
+                boolean force;
+                boolean stop;
+                int pendingCount;
+                lock.lock();
+                try {
+                    while (journalQueue.isEmpty() && !flushRequested && !closing) {
+                        recordsQueued.awaitUninterruptibly();
+                    }
+                    batch.addAll(journalQueue);
+                    journalQueue.clear();
+                    drained = queuedRecords;
+                    force = flushRequested || closing;
+                    flushRequested = false;
+                    stop = closing;
+                    pendingCount = pending.size();
+                } finally {
+                    lock.unlock();
+                }
+
+                append(batch);
+                batch.clear();
+                if (force) {
+                    force();
+                    markFlushed(drained);
+                }
+                if (stop) {
+                    return;
+                }
+                if (journalRecords > Math.max(MIN_COMPACTION_RECORDS, pendingCount * 4)) {
+                    compact();
+                }
+            }
+        } finally {
+            closeJournal();
+            lock.lock();
+            try {
+                writer = null;
+                recordsFlushed.signalAll(); // Nobody waits for a writer that is gone
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void markFlushed(long records) {
+        lock.lock();
+        try {
+            flushedRecords = Math.max(flushedRecords, records);
+            recordsFlushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Records still queued when the snapshot is taken are appended after it again; replaying them on
+    // top of a state that already includes them changes nothing, as each sets or removes one message.
+    private void compact() {
+        List<OutboxRecord> records;
+        lock.lock();
+        try {
+            records = snapshot();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            rewriteJournal(records);
+        } catch (IOException e) {
+            logger.error("Cannot compact the SMS outbox journal", e);
+        }
+    }
+
+    private List<OutboxRecord> snapshot() {
+        List<OutboxRecord> records = new ArrayList<>(pending.size());
+        for (Pending entry : pending.values()) {
+            records.add(addRecord(entry));
+        }
+        return records;
+    }
+
+    private void replay(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                OutboxRecord record;
+                try {
+                    record = JsonSerialization.readValue(line, OutboxRecord.class);
+                } catch (IOException e) {
+                    logger.warn("Skipping an unreadable SMS outbox journal line"); // e.g. torn by a crash mid-append
+                    continue;
+                }
+                Pending previous;
+                if (OutboxRecord.REMOVE.equals(record.getOp())) {
+                    previous = pending.remove(record.getId());
+                } else {
+                    SmsMessage message = new SmsMessage(record.getId(), record.getSessionKey(), record.getMobileNumber(),
+                            record.getText(), record.getServiceUrl(), record.getBulkServiceUrl(), record.getProviders(),
+                            Instant.ofEpochMilli(record.getExpiresAt()));
+                    Pending entry = new Pending(message, record.getAttempts(), record.getNextAttemptAt(), nextSequence++);
+                    previous = pending.put(record.getId(), entry);
+                    unclaimed.add(entry);
+                }
+                if (previous != null) {
+                    previous.removed = true;
+                }
+            }
+        }
+        for (Pending entry : pending.values()) {
+            if (entry.message.getSessionKey() != null) {
+                idsBySession.put(entry.message.getSessionKey(), entry.message.getId());
+            }
+        }
+    }
+
+    // Rewrites the journal with the given records and switches appends over to it.
+    private void rewriteJournal(List<OutboxRecord> records) throws IOException {
+        Path file = directory.resolve(JOURNAL_FILE);
+        Path tmp = directory.resolve(JOURNAL_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            restrictToOwner(tmp);
+            write(out, records);
+            out.force(true);
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null; // Stays null, i.e. memory only, if the switch below fails
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalRecords = records.size();
+    }
+
+    private void append(List<OutboxRecord> records) {
+        if (journal == null || records.isEmpty()) {
+            return;
+        }
+        try {
+            write(journal, records);
+            journalRecords += records.size();
+        } catch (IOException e) {
+            logger.error("Cannot append to the SMS outbox journal", e);
+        }
+    }
+
+    private void force() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.force(false);
+        } catch (IOException e) {
+            logger.error("Cannot flush the SMS outbox journal", e);
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Cannot close the SMS outbox journal", e);
+        }
+        journal = null;
+    }
+
+    // One write for the whole batch of lines.
+    private static void write(FileChannel channel, List<OutboxRecord> records) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(records.size() * 256);
+        for (OutboxRecord record : records) {
+            lines.write(JsonSerialization.writeValueAsBytes(record));
+            lines.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void restrictToOwner(Path file) {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // Not a POSIX file system; rely on the directory's permissions
+        }
+    }
+
+    private static OutboxRecord addRecord(Pending entry) {
+        SmsMessage message = entry.message;
+        OutboxRecord record = new OutboxRecord();
+        record.setOp(OutboxRecord.ADD);
+        record.setId(message.getId());
+        record.setSessionKey(message.getSessionKey());
+        record.setMobileNumber(message.getMobileNumber());
+        record.setText(message.getText());
+        record.setServiceUrl(message.getServiceUrl());
+        record.setBulkServiceUrl(message.getBulkServiceUrl());
+        record.setProviders(message.getProviders());
+        record.setExpiresAt(message.getExpiresAt().toEpochMilli());
+        record.setAttempts(entry.attempts);
+        record.setNextAttemptAt(entry.nextAttemptAt);
+        return record;
+    }
+
+    private static OutboxRecord removeRecord(String id) {
+        OutboxRecord record = new OutboxRecord();
+        record.setOp(OutboxRecord.REMOVE);
+        record.setId(id);
+        return record;
+    }
+
+    /**
+     * A message in the outbox with its retry state.
+     */
+    public static final class Pending {
+        private final SmsMessage message;
+        private final long sequence;
+        private int attempts; // Guarded by the outbox lock
+        private long nextAttemptAt; // Guarded by the outbox lock; fixed while queued
+        private boolean taken; // Guarded by the outbox lock
+        private boolean removed; // Guarded by the outbox lock
+
+        private Pending(SmsMessage message, int attempts, long nextAttemptAt, long sequence) {
+            this.message = message;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+            this.sequence = sequence;
+        }
+
+        public SmsMessage getMessage() {
+            return message;
+        }
+
+        /**
+         * @return the number of failed delivery attempts so far; read it only while the message is claimed
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Name and fixed headers shared by the providers; subclasses supply the URI and body.
+ */
+abstract class HttpSmsProvider implements SmsProvider {
+
+    private final String name;
+    private final String[] headers; // Alternating names and values, ready for HttpRequest.Builder.headers()
+
+    HttpSmsProvider(String name, Map<String, String> headers) {
+        this.name = name;
+        this.headers = headers == null ? new String[0] : headers.entrySet().stream()
+                .flatMap(header -> Stream.of(header.getKey(), header.getValue()))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    HttpRequest.Builder post(URI uri, String contentType, byte[] body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        return headers.length == 0 ? builder : builder.headers(headers);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the URL is not an absolute http(s) URL
+     */
+    static URI httpUri(String url) {
+        URI uri = URI.create(url.trim());
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + url);
+        }
+        return uri;
+    }
+}
@@ -0,0 +1,70 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import com.mysillydreams.keycloak.authenticator.sms.SmsMessage;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts {@code {"mobileNumber", "message"}} to the URL, or {@code {"messages": [{"id", "mobileNumber",
+ * "message"}, ...]}} to the bulk URL if there is one. This is the format of the sms-service.
+ */
+public class JsonWebhookProvider extends HttpSmsProvider {
+
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final URI uri;
+    private final URI bulkUri;
+
+    public JsonWebhookProvider(String name, String url, String bulkUrl, Map<String, String> headers) {
+        super(name, headers);
+        this.uri = httpUri(url);
+        this.bulkUri = bulkUrl == null || bulkUrl.isBlank() ? null : httpUri(bulkUrl);
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return bulkUri != null;
+    }
+
+    @Override
+    public HttpRequest.Builder newRequest(List<SmsMessage> messages) {
+        if (bulkUri == null) {
+            return post(uri, CONTENT_TYPE, singleBody(messages.get(0)));
+        }
+        return post(bulkUri, CONTENT_TYPE, bulkBody(messages));
+    }
+
+    private static byte[] singleBody(SmsMessage message) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("mobileNumber", message.getMobileNumber());
+        body.put("message", message.getText());
+        return toJson(body);
+    }
+
+    private static byte[] bulkBody(List<SmsMessage> messages) {
+        List<Map<String, String>> items = new ArrayList<>(messages.size());
+        for (SmsMessage message : messages) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("id", message.getId()); // Lets the service drop duplicates of a retried batch
+            item.put("mobileNumber", message.getMobileNumber());
+            item.put("message", message.getText());
+            items.add(item);
+        }
+        return toJson(Map.of("messages", items));
+    }
+
+    private static byte[] toJson(Object body) {
+        try {
+            return JsonSerialization.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize SMS request", e);
+        }
+    }
+}
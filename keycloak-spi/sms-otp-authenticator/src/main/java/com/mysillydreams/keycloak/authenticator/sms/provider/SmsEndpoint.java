@@ -0,0 +1,35 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import com.mysillydreams.keycloak.authenticator.sms.CircuitBreaker;
+
+/**
+ * A provider within a route, with its share of the traffic and its own circuit breaker, so one
+ * failing vendor does not stop sends through the others.
+ */
+public final class SmsEndpoint {
+
+    private final SmsProvider provider;
+    private final int weight;
+    private final CircuitBreaker circuitBreaker;
+
+    SmsEndpoint(SmsProvider provider, int weight, CircuitBreaker circuitBreaker) {
+        this.provider = provider;
+        this.weight = weight;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public SmsProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return the share of the traffic; 0 means the endpoint is only used when the others fail
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,29 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import com.mysillydreams.keycloak.authenticator.sms.SmsMessage;
+
+import java.net.http.HttpRequest;
+import java.util.List;
+
+/**
+ * Turns OTP texts into HTTP requests for one SMS vendor endpoint. Implementations are immutable and
+ * built once per provider config, so building a request only fills in the messages.
+ */
+public interface SmsProvider {
+
+    /**
+     * @return the name from the provider config, used in logs
+     */
+    String getName();
+
+    /**
+     * @return true if several messages can be sent in one request
+     */
+    boolean supportsBatch();
+
+    /**
+     * Builds the request delivering the messages. There is more than one message only if
+     * {@link #supportsBatch()} is true; the caller sets the timeout.
+     */
+    HttpRequest.Builder newRequest(List<SmsMessage> messages);
+}
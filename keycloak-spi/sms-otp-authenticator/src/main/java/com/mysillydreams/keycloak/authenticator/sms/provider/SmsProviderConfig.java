@@ -0,0 +1,100 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import java.util.Map;
+
+/**
+ * One entry of the authenticator's SMS providers setting, a JSON array such as
+ * <pre>
+ * [{"name": "vendor-a", "type": "webhook", "url": "https://a.example/sms", "bulkUrl": "https://a.example/sms/bulk", "weight": 3},
+ *  {"name": "vendor-b", "type": "template", "url": "https://b.example/send", "weight": 1,
+ *   "contentType": "application/x-www-form-urlencoded", "template": "to=${mobileNumber}&amp;text=${message}",
+ *   "headers": {"Authorization": "Bearer ..."}}]
+ * </pre>
+ */
+public class SmsProviderConfig {
+
+    public static final String TYPE_WEBHOOK = "webhook";
+    public static final String TYPE_TEMPLATE = "template";
+
+    private String name;
+    private String type = TYPE_WEBHOOK;
+    private String url;
+    private String bulkUrl;
+    private int weight = 1;
+    private String contentType;
+    private String template;
+    private Map<String, String> headers;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return the webhook endpoint accepting several messages per request, or null if there is none
+     */
+    public String getBulkUrl() {
+        return bulkUrl;
+    }
+
+    public void setBulkUrl(String bulkUrl) {
+        this.bulkUrl = bulkUrl;
+    }
+
+    /**
+     * @return the provider's share of the traffic relative to the other providers' weights
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return the request body of a template provider, with ${id}, ${mobileNumber} and ${message} placeholders
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(String template) {
+        this.template = template;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The endpoints a message may be sent through, tried in a weighted random order: an endpoint with
+ * twice the weight is tried first twice as often, and the others follow as failovers.
+ */
+public final class SmsRoute {
+
+    private final SmsEndpoint[] endpoints;
+    private final List<SmsEndpoint> onlyEndpoint; // Set if there is a single endpoint
+    private final int totalWeight;
+
+    SmsRoute(List<SmsEndpoint> endpoints) {
+        this.endpoints = endpoints.toArray(new SmsEndpoint[0]);
+        this.onlyEndpoint = endpoints.size() == 1 ? List.of(endpoints.get(0)) : null;
+        this.totalWeight = endpoints.stream().mapToInt(SmsEndpoint::getWeight).sum();
+    }
+
+    /**
+     * @return all endpoints in the order to try them for one message
+     */
+    public List<SmsEndpoint> failoverOrder() {
+        if (onlyEndpoint != null) {
+            return onlyEndpoint;
+        }
+        List<SmsEndpoint> remaining = new ArrayList<>(Arrays.asList(endpoints));
+        List<SmsEndpoint> order = new ArrayList<>(endpoints.length);
+        int remainingWeight = totalWeight;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (remainingWeight > 0) {
+            int pick = random.nextInt(remainingWeight);
+            for (int i = 0; i < remaining.size(); i++) {
+                pick -= remaining.get(i).getWeight();
+                if (pick < 0) {
+                    SmsEndpoint endpoint = remaining.remove(i);
+                    order.add(endpoint);
+                    remainingWeight -= endpoint.getWeight();
+                    break;
+                }
+            }
+        }
+        order.addAll(remaining); // Weight 0, in config order
+        return order;
+    }
+}
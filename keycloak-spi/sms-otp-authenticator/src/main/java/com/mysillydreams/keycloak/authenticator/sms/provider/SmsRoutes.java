@@ -0,0 +1,96 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import com.mysillydreams.keycloak.authenticator.sms.CircuitBreaker;
+import com.mysillydreams.keycloak.authenticator.sms.SmsMessage;
+import org.jboss.logging.Logger;
+import org.keycloak.util.JsonSerialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the route of a message from the providers setting it was queued with, or from the plain SMS
+ * service URLs if that setting is empty. Routes are cached by setting, so each config is parsed once
+ * and its endpoints keep their circuit breaker state across messages.
+ */
+public class SmsRoutes {
+
+    private static final Logger logger = Logger.getLogger(SmsRoutes.class);
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, Optional<SmsRoute>> routes = new ConcurrentHashMap<>(); // Config values are few
+
+    public SmsRoutes(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return the message's route, or null if its providers setting is invalid
+     */
+    public SmsRoute resolve(SmsMessage message) {
+        if (message.getProviders() != null) {
+            return routes.computeIfAbsent(message.getProviders(), this::parse).orElse(null);
+        }
+        String key = message.getServiceUrl() + '\n' + message.getBulkServiceUrl();
+        return routes.computeIfAbsent(key, ignored -> webhook(message.getServiceUrl(), message.getBulkServiceUrl()))
+                .orElse(null);
+    }
+
+    private Optional<SmsRoute> parse(String providers) {
+        try {
+            SmsProviderConfig[] configs = JsonSerialization.readValue(providers, SmsProviderConfig[].class);
+            if (configs == null || configs.length == 0) {
+                throw new IllegalArgumentException("no providers are listed");
+            }
+            List<SmsEndpoint> endpoints = new ArrayList<>(configs.length);
+            for (int i = 0; i < configs.length; i++) {
+                endpoints.add(endpoint(configs[i], i));
+            }
+            return Optional.of(new SmsRoute(endpoints));
+        } catch (IOException | IllegalArgumentException e) {
+            // The setting may hold API keys, so only the reason is logged.
+            logger.warnf("Ignoring invalid SMS providers setting: %s", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private SmsEndpoint endpoint(SmsProviderConfig config, int index) {
+        String name = config.getName() == null || config.getName().isBlank() ? "provider-" + (index + 1) : config.getName();
+        if (config.getUrl() == null || config.getUrl().isBlank()) {
+            throw new IllegalArgumentException(name + " has no url");
+        }
+        if (config.getWeight() < 0) {
+            throw new IllegalArgumentException(name + " has a negative weight");
+        }
+        if (config.getHeaders() != null && config.getHeaders().values().stream().anyMatch(value -> value == null)) {
+            throw new IllegalArgumentException(name + " has a header without a value");
+        }
+        SmsProvider provider;
+        if (SmsProviderConfig.TYPE_WEBHOOK.equals(config.getType())) {
+            provider = new JsonWebhookProvider(name, config.getUrl(), config.getBulkUrl(), config.getHeaders());
+        } else if (SmsProviderConfig.TYPE_TEMPLATE.equals(config.getType())) {
+            provider = new TemplateSmsProvider(name, config.getUrl(), config.getContentType(), config.getTemplate(),
+                    config.getHeaders());
+        } else {
+            throw new IllegalArgumentException(name + " has unknown type " + config.getType());
+        }
+        return new SmsEndpoint(provider, config.getWeight(), new CircuitBreaker(failureThreshold, openMillis));
+    }
+
+    private Optional<SmsRoute> webhook(String url, String bulkUrl) {
+        try {
+            SmsProvider provider = new JsonWebhookProvider("sms-service", url, bulkUrl, null);
+            return Optional.of(new SmsRoute(List.of(
+                    new SmsEndpoint(provider, 1, new CircuitBreaker(failureThreshold, openMillis)))));
+        } catch (IllegalArgumentException e) {
+            logger.warnf("Ignoring invalid SMS service URL %s: %s", url, e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
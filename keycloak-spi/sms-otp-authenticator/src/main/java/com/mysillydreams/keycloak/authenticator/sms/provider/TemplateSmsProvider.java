@@ -0,0 +1,116 @@
+package com.mysillydreams.keycloak.authenticator.sms.provider;
+
+import com.mysillydreams.keycloak.authenticator.sms.SmsMessage;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Posts a body built from a template, for vendors with their own request format. The placeholders
+ * ${id}, ${mobileNumber} and ${message} are replaced by the message's values, escaped for the content
+ * type: as JSON string content for JSON, URL-encoded for forms, and as-is otherwise. The template is
+ * split into parts once, so rendering is a single pass.
+ */
+public class TemplateSmsProvider extends HttpSmsProvider {
+
+    private static final String[] PLACEHOLDERS = {"${id}", "${mobileNumber}", "${message}"};
+
+    private enum Escaping { NONE, JSON, FORM }
+
+    private final URI uri;
+    private final String contentType;
+    private final Escaping escaping;
+    private final String[] literals; // literals[i] comes before fields[i]; the last literal ends the body
+    private final int[] fields; // Indexes into PLACEHOLDERS
+
+    public TemplateSmsProvider(String name, String url, String contentType, String template, Map<String, String> headers) {
+        super(name, headers);
+        if (template == null || template.isEmpty()) {
+            throw new IllegalArgumentException("A template provider needs a template");
+        }
+        this.uri = httpUri(url);
+        this.contentType = contentType == null || contentType.isBlank() ? "application/json" : contentType.trim();
+        String type = this.contentType.toLowerCase(Locale.ROOT);
+        this.escaping = type.contains("json") ? Escaping.JSON
+                : type.startsWith("application/x-www-form-urlencoded") ? Escaping.FORM
+                : Escaping.NONE;
+
+        List<String> literalParts = new ArrayList<>();
+        List<Integer> fieldParts = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int next = -1;
+            int field = -1;
+            for (int i = 0; i < PLACEHOLDERS.length; i++) {
+                int at = template.indexOf(PLACEHOLDERS[i], start);
+                if (at >= 0 && (next < 0 || at < next)) {
+                    next = at;
+                    field = i;
+                }
+            }
+            if (next < 0) {
+                literalParts.add(template.substring(start));
+                break;
+            }
+            literalParts.add(template.substring(start, next));
+            fieldParts.add(field);
+            start = next + PLACEHOLDERS[field].length();
+        }
+        this.literals = literalParts.toArray(new String[0]);
+        this.fields = fieldParts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return false;
+    }
+
+    @Override
+    public HttpRequest.Builder newRequest(List<SmsMessage> messages) {
+        SmsMessage message = messages.get(0);
+        StringBuilder body = new StringBuilder(256);
+        for (int i = 0; i < fields.length; i++) {
+            body.append(literals[i]);
+            String value = switch (fields[i]) {
+                case 0 -> message.getId();
+                case 1 -> message.getMobileNumber();
+                default -> message.getText();
+            };
+            appendEscaped(body, value);
+        }
+        body.append(literals[fields.length]);
+        return post(uri, contentType, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendEscaped(StringBuilder body, String value) {
+        switch (escaping) {
+            case FORM -> body.append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            case JSON -> {
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    switch (c) {
+                        case '"' -> body.append("\\\"");
+                        case '\\' -> body.append("\\\\");
+                        case '\n' -> body.append("\\n");
+                        case '\r' -> body.append("\\r");
+                        case '\t' -> body.append("\\t");
+                        default -> {
+                            if (c < 0x20) {
+                                body.append(String.format("\\u%04x", (int) c));
+                            } else {
+                                body.append(c);
+                            }
+                        }
+                    }
+                }
+            }
+            default -> body.append(value);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mysillydreams.keycloak.authenticator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtpGeneratorTest {
+
+    private final OtpGenerator generator = new OtpGenerator();
+
+    @Test
+    void generatesDigitsOfEveryAllowedLength() {
+        for (int length = 1; length <= OtpGenerator.MAX_LENGTH; length++) {
+            for (int i = 0; i < 100; i++) {
+                String code = generator.generate(length);
+                assertEquals(length, code.length());
+                assertTrue(code.chars().allMatch(c -> c >= '0' && c <= '9'), code);
+            }
+        }
+    }
+
+    @Test
+    void keepsLeadingZeros() {
+        boolean leadingZero = false;
+        for (int i = 0; i < 2_000 && !leadingZero; i++) {
+            String code = generator.generate(2);
+            assertEquals(2, code.length());
+            leadingZero = code.charAt(0) == '0'; // One code in ten; missing it 2000 times is 0.9^2000
+        }
+        assertTrue(leadingZero);
+    }
+
+    @Test
+    void coversEveryDigit() {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 1_000 && seen.size() < 10; i++) {
+            seen.add(generator.generate(1));
+        }
+        assertEquals(10, seen.size());
+    }
+
+    @Test
+    void rejectsLengthsOutsideOneToEighteen() {
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(OtpGenerator.MAX_LENGTH + 1));
+    }
+
+    @Test
+    void matchesOnlyTheSameCode() {
+        assertTrue(OtpGenerator.matches("012345", "012345"));
+        assertFalse(OtpGenerator.matches("012345", "012346"));
+        assertFalse(OtpGenerator.matches("012345", "12345"));
+        assertFalse(OtpGenerator.matches("012345", "0123456"));
+        assertFalse(OtpGenerator.matches("012345", ""));
+    }
+
+    @Test
+    void nullNeverMatches() {
+        assertFalse(OtpGenerator.matches(null, "012345"));
+        assertFalse(OtpGenerator.matches("012345", null));
+        assertFalse(OtpGenerator.matches(null, null));
+    }
+}
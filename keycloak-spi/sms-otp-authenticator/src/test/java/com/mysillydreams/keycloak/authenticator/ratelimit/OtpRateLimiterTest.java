@@ -0,0 +1,68 @@
+package com.mysillydreams.keycloak.authenticator.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtpRateLimiterTest {
+
+    private final OtpRateLimiter limiter = new OtpRateLimiter(4, 1_000);
+
+    @Test
+    void sendRejectedByOneLimitDoesNotCountAgainstTheOthers() {
+        Map<String, String> config = Map.of(
+                OtpRateLimiter.SEND_PER_MOBILE, "1/300",
+                OtpRateLimiter.SEND_PER_USER, "2/300",
+                OtpRateLimiter.SEND_PER_IP, "2/300");
+
+        assertTrue(limiter.allowSend(config, "+15550100", "user-1", "10.0.0.1"));
+        assertFalse(limiter.allowSend(config, "+15550100", "user-1", "10.0.0.1")); // Mobile exhausted
+
+        // The rejected send took nothing from the user and IP limits
+        assertTrue(limiter.allowSend(config, "+15550101", "user-1", "10.0.0.1"));
+        assertFalse(limiter.allowSend(config, "+15550102", "user-1", "10.0.0.1")); // Now the user's is used up
+    }
+
+    @Test
+    void verificationRejectedByTheUserLimitDoesNotCountAgainstTheIp() {
+        Map<String, String> config = Map.of(
+                OtpRateLimiter.VERIFY_PER_USER, "1/300",
+                OtpRateLimiter.VERIFY_PER_IP, "2/300");
+
+        assertTrue(limiter.allowVerification(config, "user-1", "10.0.0.1"));
+        assertFalse(limiter.allowVerification(config, "user-1", "10.0.0.1"));
+
+        assertTrue(limiter.allowVerification(config, "user-2", "10.0.0.1"));
+        assertFalse(limiter.allowVerification(config, "user-3", "10.0.0.1"));
+    }
+
+    @Test
+    void emptyLimitDisablesIt() {
+        Map<String, String> config = Map.of(
+                OtpRateLimiter.SEND_PER_MOBILE, "",
+                OtpRateLimiter.SEND_PER_USER, "",
+                OtpRateLimiter.SEND_PER_IP, "");
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.allowSend(config, "+15550100", "user-1", "10.0.0.1"));
+        }
+    }
+
+    @Test
+    void releasedPermitCanBeTakenAgain() {
+        TokenBucketLimiter buckets = new TokenBucketLimiter(1, 10);
+        RateLimit limit = RateLimit.parse("2/300");
+
+        assertTrue(buckets.tryAcquire("key", limit));
+        assertTrue(buckets.tryAcquire("key", limit));
+        assertFalse(buckets.tryAcquire("key", limit));
+
+        buckets.release("key", limit);
+
+        assertTrue(buckets.tryAcquire("key", limit));
+        assertFalse(buckets.tryAcquire("key", limit));
+    }
+}
@@ -0,0 +1,82 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 100;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, OPEN_MILLIS);
+
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void letsASingleTrialRequestThroughOnceTheOpenPeriodHasPassed() throws InterruptedException {
+        CircuitBreaker breaker = open();
+
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest()); // Others wait for the trial's outcome
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    void successfulTrialClosesTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordSuccess();
+
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void failedTrialReopensTheBreakerForAnotherPeriod() throws InterruptedException {
+        CircuitBreaker breaker = open();
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+        Thread.sleep(OPEN_MILLIS + 20);
+        assertTrue(breaker.allowRequest());
+    }
+
+    private static CircuitBreaker open() {
+        CircuitBreaker breaker = new CircuitBreaker(2, OPEN_MILLIS);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        return breaker;
+    }
+}
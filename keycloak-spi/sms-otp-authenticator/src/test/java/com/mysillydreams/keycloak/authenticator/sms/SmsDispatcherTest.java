@@ -0,0 +1,160 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import com.mysillydreams.keycloak.authenticator.metrics.OtpMetrics;
+import com.mysillydreams.keycloak.authenticator.sms.provider.SmsRoutes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the dispatcher against a local stub of the SMS service.
+ */
+class SmsDispatcherTest {
+
+    @TempDir
+    Path outboxDirectory;
+
+    private StubSmsServer stub;
+    private HttpClient httpClient;
+    private SmsDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new StubSmsServer();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+        stub.close();
+    }
+
+    @Test
+    void dispatchReturnsImmediatelyAndASlowServiceEndsInFailed() throws InterruptedException {
+        stub.delay(5_000);
+        dispatcher = newDispatcher(Duration.ofMillis(300), 1);
+        dispatcher.start();
+        SmsMessage message = message("session-1");
+
+        long start = System.nanoTime();
+        DeliveryStatus queued = dispatcher.dispatch(message);
+        long dispatchMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(DeliveryStatus.PENDING, queued);
+        assertTrue(dispatchMillis < 1_000, "dispatch took " + dispatchMillis + " ms");
+        assertTrue(stub.awaitRequests(1, 2_000));
+        // Settled by the request timeout, long before the stub would have answered
+        assertEquals(DeliveryStatus.FAILED, awaitSettled(message.getId(), 3_000));
+    }
+
+    @Test
+    void deliversThroughTheService() throws InterruptedException {
+        dispatcher = newDispatcher(Duration.ofSeconds(2), 3);
+        dispatcher.start();
+        SmsMessage message = message("session-1");
+
+        dispatcher.dispatch(message);
+
+        assertEquals(DeliveryStatus.SENT, awaitSettled(message.getId(), 3_000));
+        assertEquals("/sms", stub.requests().get(0).getPath());
+        assertTrue(stub.requests().get(0).getBody().contains("\"mobileNumber\":\"+15550100\""));
+    }
+
+    @Test
+    void sendsMessagesForABulkEndpointInOneRequest() throws InterruptedException {
+        dispatcher = newDispatcher(Duration.ofSeconds(2), 3);
+        List<SmsMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            SmsMessage message = new SmsMessage("session-" + i, "+1555010" + i, "Your code is 12345" + i,
+                    stub.url("/sms"), stub.url("/sms/bulk"), null, Instant.now().plusSeconds(300));
+            messages.add(message);
+            dispatcher.dispatch(message); // Queued before the dispatcher starts, so they are claimed together
+        }
+
+        dispatcher.start();
+
+        for (SmsMessage message : messages) {
+            assertEquals(DeliveryStatus.SENT, awaitSettled(message.getId(), 3_000));
+        }
+        assertEquals(1, stub.requests().size());
+        StubSmsServer.Request request = stub.requests().get(0);
+        assertEquals("/sms/bulk", request.getPath());
+        for (SmsMessage message : messages) {
+            assertTrue(request.getBody().contains(message.getId()));
+        }
+    }
+
+    @Test
+    void retriesWithGrowingBackoffUntilTheServiceRecovers() throws InterruptedException {
+        stub.respondNext(503, 503);
+        dispatcher = newDispatcher(Duration.ofSeconds(2), 5, 100, 1_000);
+        dispatcher.start();
+        SmsMessage message = message("session-1");
+
+        dispatcher.dispatch(message);
+
+        assertEquals(DeliveryStatus.SENT, awaitSettled(message.getId(), 5_000));
+        List<StubSmsServer.Request> requests = stub.requests();
+        assertEquals(3, requests.size());
+        // Backoff after the n-th failure is between half and all of base * 2^(n-1)
+        long firstGap = requests.get(1).getReceivedAt() - requests.get(0).getReceivedAt();
+        long secondGap = requests.get(2).getReceivedAt() - requests.get(1).getReceivedAt();
+        assertTrue(firstGap >= 50, "first retry after " + firstGap + " ms");
+        assertTrue(secondGap >= 100, "second retry after " + secondGap + " ms");
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws InterruptedException {
+        stub.respondWith(503);
+        dispatcher = newDispatcher(Duration.ofSeconds(2), 3, 20, 100);
+        dispatcher.start();
+        SmsMessage message = message("session-1");
+
+        dispatcher.dispatch(message);
+
+        assertEquals(DeliveryStatus.FAILED, awaitSettled(message.getId(), 5_000));
+        assertEquals(3, stub.requests().size());
+    }
+
+    private SmsDispatcher newDispatcher(Duration requestTimeout, int maxAttempts) {
+        return newDispatcher(requestTimeout, maxAttempts, 50, 200);
+    }
+
+    private SmsDispatcher newDispatcher(Duration requestTimeout, int maxAttempts, long retryBaseMillis,
+                                        long retryMaxMillis) {
+        SmsOutbox outbox = new SmsOutbox(outboxDirectory, 100);
+        return new SmsDispatcher(httpClient, requestTimeout, outbox, new SmsRoutes(5, 60_000),
+                new OtpMetrics(new SimpleMeterRegistry()), 10, maxAttempts, retryBaseMillis, retryMaxMillis, 100);
+    }
+
+    private SmsMessage message(String sessionKey) {
+        return new SmsMessage(sessionKey, "+15550100", "Your code is 123456", stub.url("/sms"), null, null,
+                Instant.now().plusSeconds(300));
+    }
+
+    private DeliveryStatus awaitSettled(String messageId, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        DeliveryStatus status = dispatcher.status(messageId);
+        while (status == DeliveryStatus.PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = dispatcher.status(messageId);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,170 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmsOutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private SmsOutbox outbox;
+
+    @AfterEach
+    void tearDown() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void replaysPendingMessagesAfterARestart() throws InterruptedException {
+        outbox = open();
+        SmsMessage delivered = message("s1");
+        SmsMessage retried = message("s2");
+        SmsMessage untouched = message("s3");
+        outbox.add(delivered);
+        outbox.add(retried);
+        outbox.add(untouched);
+        outbox.takeDue(2, 0);
+        outbox.remove(delivered.getId());
+        outbox.retry(retried.getId(), 0, true);
+        outbox.close();
+
+        outbox = open();
+
+        assertEquals(2, outbox.size());
+        List<SmsOutbox.Pending> due = outbox.takeDue(10, 0);
+        assertEquals(Set.of(retried.getId(), untouched.getId()), ids(due));
+        SmsOutbox.Pending replayed = due.stream().filter(p -> p.getMessage().getId().equals(retried.getId())).findFirst().get();
+        assertEquals(1, replayed.getAttempts());
+        assertEquals("s2", replayed.getMessage().getSessionKey());
+        assertEquals(retried.getText(), replayed.getMessage().getText());
+    }
+
+    @Test
+    void skipsATornJournalLine() throws IOException {
+        outbox = open();
+        SmsMessage message = message("s1");
+        outbox.add(message);
+        outbox.close();
+        Files.writeString(directory.resolve("sms-outbox.log"), "{\"op\":\"ADD\",\"id\":", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        outbox = open();
+
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    void newerMessageReplacesTheUndeliveredOneOfTheSameSession() throws InterruptedException {
+        outbox = open();
+        SmsMessage older = message("s1");
+        SmsMessage newer = message("s1");
+        outbox.add(older);
+        outbox.add(newer);
+        outbox.add(message("s2"));
+
+        assertEquals(2, outbox.size());
+        Set<String> due = ids(outbox.takeDue(10, 0));
+        assertTrue(due.contains(newer.getId()));
+        assertFalse(due.contains(older.getId()));
+    }
+
+    @Test
+    void replacementSurvivesARestart() {
+        outbox = open();
+        outbox.add(message("s1"));
+        outbox.add(message("s1"));
+        outbox.close();
+
+        outbox = open();
+
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    void messageBeingSentIsNotReplaced() throws InterruptedException {
+        outbox = open();
+        SmsMessage sending = message("s1");
+        outbox.add(sending);
+        outbox.takeDue(1, 0);
+
+        SmsMessage newer = message("s1");
+        outbox.add(newer);
+
+        assertEquals(2, outbox.size());
+        assertEquals(Set.of(newer.getId()), ids(outbox.takeDue(10, 0)));
+    }
+
+    @Test
+    void rejectsMessagesWhenFull() {
+        outbox = new SmsOutbox(directory, 2);
+        outbox.open();
+
+        assertTrue(outbox.add(message("s1")));
+        assertTrue(outbox.add(message("s2")));
+        assertFalse(outbox.add(message("s3")));
+    }
+
+    @Test
+    void retriedMessageIsNotDueBeforeItsNextAttempt() throws InterruptedException {
+        outbox = open();
+        SmsMessage message = message("s1");
+        outbox.add(message);
+        outbox.takeDue(1, 0);
+        outbox.retry(message.getId(), System.currentTimeMillis() + 200, true);
+
+        assertTrue(outbox.takeDue(1, 50).isEmpty());
+        List<SmsOutbox.Pending> due = outbox.takeDue(1, 1_000);
+        assertEquals(Set.of(message.getId()), ids(due));
+        assertEquals(1, due.get(0).getAttempts());
+    }
+
+    @Test
+    void claimsDueMessagesInTheOrderTheyBecameDue() throws InterruptedException {
+        outbox = open();
+        SmsMessage later = message("s1");
+        SmsMessage sooner = message("s2");
+        outbox.add(later);
+        outbox.add(sooner);
+        outbox.takeDue(2, 0);
+        long now = System.currentTimeMillis();
+        outbox.retry(later.getId(), now - 10, true);
+        outbox.retry(sooner.getId(), now - 20, true);
+
+        List<SmsOutbox.Pending> due = outbox.takeDue(1, 0);
+
+        assertEquals(sooner.getId(), due.get(0).getMessage().getId());
+    }
+
+    private SmsOutbox open() {
+        SmsOutbox opened = new SmsOutbox(directory, 100);
+        opened.open();
+        return opened;
+    }
+
+    private static SmsMessage message(String sessionKey) {
+        return new SmsMessage(sessionKey, "+15550100", "Your code is 123456", "http://127.0.0.1:1/sms", null, null,
+                Instant.now().plusSeconds(300));
+    }
+
+    private static Set<String> ids(List<SmsOutbox.Pending> entries) {
+        return entries.stream().map(entry -> entry.getMessage().getId()).collect(Collectors.toSet());
+    }
+}
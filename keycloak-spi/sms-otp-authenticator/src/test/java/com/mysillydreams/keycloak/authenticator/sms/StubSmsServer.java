@@ -0,0 +1,127 @@
+package com.mysillydreams.keycloak.authenticator.sms;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local SMS service for tests. It records every request and answers with the scripted status
+ * codes, then with the default status, optionally after a delay.
+ */
+class StubSmsServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final Deque<Integer> scriptedStatuses = new ArrayDeque<>(); // Guarded by itself
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    StubSmsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    void respondWith(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Answers the next requests with the given statuses, one each, before falling back to the default.
+     */
+    void respondNext(int... statuses) {
+        synchronized (scriptedStatuses) {
+            for (int scripted : statuses) {
+                scriptedStatuses.add(scripted);
+            }
+        }
+    }
+
+    void delay(long millis) {
+        this.delayMillis = millis;
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    /**
+     * @return true if at least {@code count} requests arrived within the timeout
+     */
+    boolean awaitRequests(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (requests.size() < count) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow(); // Interrupts delayed handlers
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            requests.add(new Request(exchange.getRequestURI().getPath(), body, System.currentTimeMillis()));
+            Integer scripted;
+            synchronized (scriptedStatuses) {
+                scripted = scriptedStatuses.poll();
+            }
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            exchange.sendResponseHeaders(scripted != null ? scripted : status, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static final class Request {
+        private final String path;
+        private final String body;
+        private final long receivedAt;
+
+        private Request(String path, String body, long receivedAt) {
+            this.path = path;
+            this.body = body;
+            this.receivedAt = receivedAt;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getBody() {
+            return body;
+        }
+
+        long getReceivedAt() {
+            return receivedAt;
+        }
+    }
+}